@@ -16,13 +16,25 @@ public class MessageConstant {
     public static final String SHOPPING_CART_IS_NULL = "购物车数据为空，不能下单";
     public static final String ADDRESS_BOOK_IS_NULL = "用户地址为空，不能下单";
     public static final String LOGIN_FAILED = "登录失败";
+    public static final String LOGIN_BUSY = "登录繁忙，请稍后再试";
     public static final String UPLOAD_FAILED = "文件上传失败";
     public static final String SETMEAL_ENABLE_FAILED = "套餐内包含未启售菜品，无法启售";
     public static final String PASSWORD_EDIT_FAILED = "密码修改失败";
     public static final String DISH_ON_SALE = "起售中的菜品不能删除";
     public static final String SETMEAL_ON_SALE = "起售中的套餐不能删除";
+    public static final String DISH_NOT_FOUND = "菜品不存在";
     public static final String DISH_BE_RELATED_BY_SETMEAL = "当前菜品关联了套餐,不能删除";
     public static final String ORDER_STATUS_ERROR = "订单状态错误";
     public static final String ORDER_NOT_FOUND = "订单不存在";
+    public static final String EXPORT_JOB_NOT_FOUND = "导出任务不存在";
+    public static final String EXPORT_JOB_NOT_FINISHED = "导出任务未完成";
+    public static final String EXPORT_JOB_BUSY = "导出任务过多，请稍后再试";
+    public static final String DATE_RANGE_INVALID = "日期区间不合法";
+    public static final String DATE_RANGE_TOO_LONG = "日期区间过长";
+    public static final String STATS_REBUILD_BUSY = "数据重建任务过多，请稍后再试";
+    public static final String ORDER_SUBMITTING = "订单正在提交，请勿重复提交";
+    public static final String IDEMPOTENCY_KEY_TOO_LONG = "幂等键过长";
+    public static final String ORDER_ITEM_UNAVAILABLE = "购物车中有已停售的商品，请修改后重新下单";
+    public static final String ORDER_AMOUNT_MISMATCH = "商品价格已变动，请刷新后重新下单";
 
 }
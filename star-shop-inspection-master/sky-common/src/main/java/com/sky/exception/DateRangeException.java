@@ -0,0 +1,12 @@
+package com.sky.exception;
+
+/**
+ * 日期区间参数不合法
+ */
+public class DateRangeException extends BaseException {
+
+    public DateRangeException(String msg) {
+        super(msg);
+    }
+
+}
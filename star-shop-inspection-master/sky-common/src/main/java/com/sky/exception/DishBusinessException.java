@@ -0,0 +1,9 @@
+package com.sky.exception;
+
+public class DishBusinessException extends BaseException {
+
+    public DishBusinessException(String msg) {
+        super(msg);
+    }
+
+}
@@ -0,0 +1,12 @@
+package com.sky.exception;
+
+/**
+ * 集群任务的锁已失效或已被其他节点接手，当前节点应停止执行
+ */
+public class JobLeaseLostException extends RuntimeException {
+
+    public JobLeaseLostException(String msg) {
+        super(msg);
+    }
+
+}
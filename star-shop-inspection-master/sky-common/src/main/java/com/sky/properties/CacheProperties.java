@@ -0,0 +1,17 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.cache")
+@Data
+public class CacheProperties {
+
+    private long localMaxSize = 1000; //本地缓存每个缓存名下的最大条数
+    private long localExpireSeconds = 60; //本地缓存过期时间
+    private long redisTtlMinutes = 60; //redis缓存过期时间
+    private String invalidationChannel = "sky:cache:invalidation"; //缓存失效消息的频道
+
+}
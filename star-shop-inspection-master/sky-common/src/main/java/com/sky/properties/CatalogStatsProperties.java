@@ -0,0 +1,14 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.catalog-stats")
+@Data
+public class CatalogStatsProperties {
+
+    private String channel = "sky:catalog-stats:changed"; //菜品和套餐起售、停售数量变化的通知频道
+
+}
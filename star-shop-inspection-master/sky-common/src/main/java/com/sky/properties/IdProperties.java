@@ -0,0 +1,15 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.id")
+@Data
+public class IdProperties {
+
+    private int workerId = -1; //雪花算法的节点号，0到31，小于0时启动时从redis领取一个空闲的节点号
+    private long workerLeaseSeconds = 300; //从redis领取的节点号的租期，运行期间自动续期
+
+}
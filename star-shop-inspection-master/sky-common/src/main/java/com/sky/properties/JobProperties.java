@@ -0,0 +1,15 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.job")
+@Data
+public class JobProperties {
+
+    private long leaseSeconds = 60; //任务锁的租期，任务执行期间自动续期，节点宕机后租期到了其他节点才能接手
+    private long lockAtLeastSeconds = 30; //任务执行完后锁至少保持的时间，避免各节点时钟稍有偏差时同一轮任务被执行多次
+
+}
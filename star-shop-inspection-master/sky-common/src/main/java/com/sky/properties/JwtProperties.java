@@ -23,4 +23,9 @@ public class JwtProperties {
     private long userTtl;
     private String userTokenName;
 
+    /**
+     * 令牌校验结果的缓存条数，令牌过期后缓存同时失效
+     */
+    private int cacheMaxSize = 10000;
+
 }
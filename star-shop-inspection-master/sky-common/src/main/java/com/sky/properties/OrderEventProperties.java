@@ -0,0 +1,18 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-event")
+@Data
+public class OrderEventProperties {
+
+    private int dispatchThreads = 2; //分发线程数
+    private int batchSize = 100; //每次领取的事件数
+    private long retryAfterSeconds = 30; //领取后超过这个时间仍未分发完成的事件会被重新领取
+    private int maxDispatchCount = 10; //最多分发次数，超过后标记为分发失败，不再重试
+    private int retentionDays = 7; //已分发事件的保留天数
+
+}
@@ -0,0 +1,16 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-job")
+@Data
+public class OrderJobProperties {
+
+    private int autoCompleteChunkSize = 500; //自动完成派送中订单时每批处理的订单数
+    private int autoCompleteAfterMinutes = 60; //下单超过这个时间仍在派送中的订单自动完成
+    private int runHistorySize = 20; //保留最近几次执行记录
+
+}
@@ -0,0 +1,15 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.order-pricing")
+@Data
+public class OrderPricingProperties {
+
+    private long catalogMaxAgeSeconds = 60; //价格目录的最长使用时间，改动通知丢失时最多使用这么久之前的价格
+    private String catalogChannel = "sky:catalog:changed"; //菜品或套餐改动的通知频道
+
+}
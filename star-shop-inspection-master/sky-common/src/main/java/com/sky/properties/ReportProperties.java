@@ -0,0 +1,19 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.report")
+@Data
+public class ReportProperties {
+
+    private String exportDir; //导出文件的缓存目录，多节点部署时所有节点挂载同一个共享目录
+    private int exportThreads = 2; //导出任务的线程数
+    private int exportQueueCapacity = 10; //排队等待的导出任务数上限
+    private long exportFileTtlHours = 24; //导出文件和任务记录的保留时间
+    private int maxRangeDays = 366; //报表查询和导出一次最多包含的天数
+    private int rebuildMaxDays = 366; //一次重建每日营业数据的最大天数
+
+}
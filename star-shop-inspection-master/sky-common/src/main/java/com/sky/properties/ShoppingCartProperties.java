@@ -0,0 +1,15 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.shopping-cart")
+@Data
+public class ShoppingCartProperties {
+
+    private int expireDays = 7; //购物车在redis中无操作后的保留天数，过期后再访问时从数据库重新加载
+    private int flushBatchSize = 100; //每次写回数据库时处理的用户数
+
+}
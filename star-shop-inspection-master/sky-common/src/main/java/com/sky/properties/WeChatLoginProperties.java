@@ -0,0 +1,23 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.wechat-login")
+@Data
+public class WeChatLoginProperties {
+
+    private String url = "https://api.weixin.qq.com/sns/jscode2session"; //微信登录接口地址
+    private int threads = 8; //调用微信登录接口的线程数
+    private int queueCapacity = 200; //等待调用微信登录接口的请求数上限，超出时直接登录失败
+    private long timeoutMillis = 3000; //等待微信登录接口返回的最长时间
+    private int failureThreshold = 5; //连续失败多少次后熔断
+    private long openSeconds = 30; //熔断持续时间
+    private int userCacheSize = 10000; //openid到用户id的缓存条数
+    private long userCacheMinutes = 30; //openid到用户id的缓存时间
+    private int openidCacheSize = 10000; //登录码到openid的缓存条数
+    private long openidCacheMinutes = 5; //登录码到openid的缓存时间，不超过登录码的有效期
+
+}
@@ -0,0 +1,19 @@
+package com.sky.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "sky.websocket")
+@Data
+public class WebSocketProperties {
+
+    private int queueCapacity = 100; //每个连接待发送消息的上限
+    private long sendTimeoutMillis = 5000; //单条消息的发送超时时间，超时后关闭连接
+    private boolean closeOnOverflow = true; //待发送消息超过上限时关闭连接，为false时丢弃新消息
+    private String broadcastChannel = "sky:websocket:broadcast"; //各节点之间转发推送消息的频道
+    private int batchMaxSize = 100; //每条redis消息最多包含的推送消息数
+    private int heartbeatThreads = 4; //发送心跳ping帧的线程数
+
+}
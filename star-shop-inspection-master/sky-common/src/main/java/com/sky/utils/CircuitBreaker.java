@@ -0,0 +1,76 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 熔断器
+ * 连续失败达到阈值后熔断，熔断期间直接拒绝请求；熔断时间到后只放行一个试探请求，成功则恢复，失败则继续熔断
+ */
+public class CircuitBreaker {
+
+    public static final String CLOSED = "CLOSED";
+    public static final String OPEN = "OPEN";
+    public static final String HALF_OPEN = "HALF_OPEN";
+
+    private final int failureThreshold;
+
+    private final long openMillis;
+
+    //连续失败次数
+    private final AtomicInteger failures = new AtomicInteger();
+
+    //熔断结束时间，0表示未熔断
+    private volatile long openUntil;
+
+    //熔断结束后是否已放行试探请求
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 是否允许发送请求
+     * @return
+     */
+    public boolean allowRequest() {
+        long until = openUntil;
+        if (until == 0) {
+            return true;
+        }
+        if (System.currentTimeMillis() < until) {
+            return false;
+        }
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    public void recordSuccess() {
+        failures.set(0);
+        openUntil = 0;
+        trialInFlight.set(false);
+    }
+
+    public void recordFailure() {
+        if (failures.incrementAndGet() >= failureThreshold || openUntil != 0) {
+            openUntil = System.currentTimeMillis() + openMillis;
+            trialInFlight.set(false);
+        }
+    }
+
+    /**
+     * 放行后请求没有发出，不影响熔断状态，只归还试探机会
+     */
+    public void recordIgnored() {
+        trialInFlight.set(false);
+    }
+
+    public String getState() {
+        long until = openUntil;
+        if (until == 0) {
+            return CLOSED;
+        }
+        return System.currentTimeMillis() < until ? OPEN : HALF_OPEN;
+    }
+}
@@ -0,0 +1,28 @@
+package com.sky.utils;
+
+import com.sky.constant.MessageConstant;
+import com.sky.exception.DateRangeException;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * 日期区间参数校验
+ */
+public class DateRangeUtil {
+
+    /**
+     * 校验起止日期都不为空、开始日期不晚于结束日期，且区间天数（含首尾）不超过上限
+     * @param begin
+     * @param end
+     * @param maxDays
+     */
+    public static void check(LocalDate begin, LocalDate end, int maxDays) {
+        if (begin == null || end == null || begin.isAfter(end)) {
+            throw new DateRangeException(MessageConstant.DATE_RANGE_INVALID);
+        }
+        if (ChronoUnit.DAYS.between(begin, end) + 1 > maxDays) {
+            throw new DateRangeException(MessageConstant.DATE_RANGE_TOO_LONG);
+        }
+    }
+}
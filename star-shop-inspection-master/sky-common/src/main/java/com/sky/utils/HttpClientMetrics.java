@@ -0,0 +1,83 @@
+package com.sky.utils;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池的请求次数、失败次数和耗时统计
+ */
+public class HttpClientMetrics {
+
+    private final String name;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public HttpClientMetrics(String name, PoolingHttpClientConnectionManager connectionManager) {
+        this.name = name;
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * 发送请求并记录耗时，耗时截止到收到响应头
+     * @param httpClient
+     * @param request
+     * @return
+     * @throws IOException
+     */
+    public CloseableHttpResponse execute(CloseableHttpClient httpClient, HttpUriRequest request) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return httpClient.execute(request);
+        } catch (IOException | RuntimeException e) {
+            failureCount.increment();
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            requestCount.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    public long getAverageLatencyMillis() {
+        long count = requestCount.sum();
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / count);
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+
+    /**
+     * 连接池当前的占用情况
+     * @return
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager.getTotalStats();
+    }
+}
@@ -1,6 +1,7 @@
 package com.sky.utils;
 
 import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
@@ -10,7 +11,9 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 
@@ -19,14 +22,57 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Http工具类
  */
+@Slf4j
 public class HttpClientUtil {
 
     static final  int TIMEOUT_MSEC = 5 * 1000;
 
+    //连接池总连接数和每个目标地址的连接数
+    static final int MAX_TOTAL = 200;
+    static final int MAX_PER_ROUTE = 50;
+
+    //服务端没有指定keep-alive时长时，空闲连接最多保留的时间
+    static final long KEEP_ALIVE_MSEC = 30 * 1000;
+
+    private static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = new PoolingHttpClientConnectionManager();
+
+    //所有请求共用一个客户端，连接在请求之间复用
+    private static final CloseableHttpClient HTTP_CLIENT;
+
+    private static final HttpClientMetrics METRICS;
+
+    static {
+        CONNECTION_MANAGER.setMaxTotal(MAX_TOTAL);
+        CONNECTION_MANAGER.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        // 复用前检查空闲过久的连接是否已被服务端关闭
+        CONNECTION_MANAGER.setValidateAfterInactivity(2000);
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(CONNECTION_MANAGER)
+                .setDefaultRequestConfig(builderRequestConfig(TIMEOUT_MSEC))
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? Math.min(keepAlive, KEEP_ALIVE_MSEC) : KEEP_ALIVE_MSEC;
+                })
+                // 后台线程定时关闭过期和空闲的连接
+                .evictExpiredConnections()
+                .evictIdleConnections(KEEP_ALIVE_MSEC, TimeUnit.MILLISECONDS)
+                .build();
+        METRICS = new HttpClientMetrics("default", CONNECTION_MANAGER);
+    }
+
+    /**
+     * 共用客户端的请求统计和连接池占用情况
+     * @return
+     */
+    public static HttpClientMetrics getMetrics() {
+        return METRICS;
+    }
+
     /**
      * 发送GET方式请求
      * @param url
@@ -34,9 +80,17 @@ public class HttpClientUtil {
      * @return
      */
     public static String doGet(String url,Map<String,String> paramMap){
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
+        return doGet(url, paramMap, TIMEOUT_MSEC);
+    }
 
+    /**
+     * 发送GET方式请求，连接、等待连接池和读取响应的超时都使用指定时间
+     * @param url
+     * @param paramMap
+     * @param timeoutMillis
+     * @return
+     */
+    public static String doGet(String url, Map<String, String> paramMap, int timeoutMillis){
         String result = "";
         CloseableHttpResponse response = null;
 
@@ -51,22 +105,31 @@ public class HttpClientUtil {
 
             //创建GET请求
             HttpGet httpGet = new HttpGet(uri);
+            if (timeoutMillis != TIMEOUT_MSEC) {
+                httpGet.setConfig(builderRequestConfig(timeoutMillis));
+            }
 
             //发送请求
-            response = httpClient.execute(httpGet);
+            response = METRICS.execute(HTTP_CLIENT, httpGet);
 
             //判断响应状态
             if(response.getStatusLine().getStatusCode() == 200){
                 result = EntityUtils.toString(response.getEntity(),"UTF-8");
+            }else {
+                // 读完响应体，连接才能回到连接池复用，否则关闭响应时连接被直接断开
+                EntityUtils.consume(response.getEntity());
             }
         }catch (Exception e){
-            e.printStackTrace();
+            // 参数中可能有密钥，只记录不带参数的地址
+            log.error("GET请求失败：{}", url, e);
         }finally {
             try {
-                response.close();
-                httpClient.close();
+                // 关闭响应后连接回到连接池，客户端不关闭
+                if (response != null) {
+                    response.close();
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                log.warn("关闭响应失败：{}", url, e);
             }
         }
 
@@ -81,8 +144,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -101,19 +162,19 @@ public class HttpClientUtil {
                 httpPost.setEntity(entity);
             }
 
-            httpPost.setConfig(builderRequestConfig());
-
             // 执行http请求
-            response = httpClient.execute(httpPost);
+            response = METRICS.execute(HTTP_CLIENT, httpPost);
 
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
             try {
-                response.close();
+                if (response != null) {
+                    response.close();
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                log.warn("关闭响应失败：{}", url, e);
             }
         }
 
@@ -128,8 +189,6 @@ public class HttpClientUtil {
      * @throws IOException
      */
     public static String doPost4Json(String url, Map<String, String> paramMap) throws IOException {
-        // 创建Httpclient对象
-        CloseableHttpClient httpClient = HttpClients.createDefault();
         CloseableHttpResponse response = null;
         String resultString = "";
 
@@ -151,29 +210,29 @@ public class HttpClientUtil {
                 httpPost.setEntity(entity);
             }
 
-            httpPost.setConfig(builderRequestConfig());
-
             // 执行http请求
-            response = httpClient.execute(httpPost);
+            response = METRICS.execute(HTTP_CLIENT, httpPost);
 
             resultString = EntityUtils.toString(response.getEntity(), "UTF-8");
         } catch (Exception e) {
             throw e;
         } finally {
             try {
-                response.close();
+                if (response != null) {
+                    response.close();
+                }
             } catch (IOException e) {
-                e.printStackTrace();
+                log.warn("关闭响应失败：{}", url, e);
             }
         }
 
         return resultString;
     }
-    private static RequestConfig builderRequestConfig() {
+    private static RequestConfig builderRequestConfig(int timeoutMillis) {
         return RequestConfig.custom()
-                .setConnectTimeout(TIMEOUT_MSEC)
-                .setConnectionRequestTimeout(TIMEOUT_MSEC)
-                .setSocketTimeout(TIMEOUT_MSEC).build();
+                .setConnectTimeout(timeoutMillis)
+                .setConnectionRequestTimeout(timeoutMillis)
+                .setSocketTimeout(timeoutMillis).build();
     }
 
 }
@@ -2,9 +2,13 @@ package com.sky.utils;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+
+import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.Key;
 import java.util.Date;
 import java.util.Map;
 
@@ -55,4 +59,15 @@ public class JwtUtil {
         return claims;
     }
 
+    /**
+     * 创建可以重复使用的Token解析器，秘钥只转换一次
+     *
+     * @param secretKey jwt秘钥
+     * @return
+     */
+    public static JwtParser createParser(String secretKey) {
+        Key key = new SecretKeySpec(secretKey.getBytes(StandardCharsets.UTF_8), SignatureAlgorithm.HS256.getJcaName());
+        return Jwts.parser().setSigningKey(key);
+    }
+
 }
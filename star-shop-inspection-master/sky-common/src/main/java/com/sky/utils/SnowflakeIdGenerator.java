@@ -0,0 +1,52 @@
+package com.sky.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 雪花算法id生成器
+ * 41位毫秒时间戳 + 5位节点号 + 7位序列号，共53位，前端js的number可以精确表示
+ * 时间戳和序列号合并保存在一个AtomicLong中，用CAS更新，不加锁也不创建对象
+ * 时钟回拨或本毫秒序列号用完时沿用上次的时间戳继续递增，生成的id始终单调递增
+ */
+public class SnowflakeIdGenerator {
+
+    //起始时间 2024-01-01 00:00:00 UTC，41位毫秒约可用69年
+    private static final long EPOCH = 1704067200000L;
+
+    private static final int WORKER_BITS = 5;
+    private static final int SEQUENCE_BITS = 7;
+
+    public static final int MAX_WORKER_ID = (1 << WORKER_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1 << SEQUENCE_BITS) - 1;
+
+    private final long workerBits;
+
+    //高位是上次的时间戳，低7位是序列号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(int workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("workerId必须在0到" + MAX_WORKER_ID + "之间");
+        }
+        this.workerBits = (long) workerId << SEQUENCE_BITS;
+    }
+
+    /**
+     * 生成下一个id
+     * @return
+     */
+    public long nextId() {
+        long current;
+        long next;
+        do {
+            current = state.get();
+            // 同一毫秒内序列号加一，序列号用完时自然进位到下一毫秒
+            next = Math.max(current + 1, (System.currentTimeMillis() - EPOCH) << SEQUENCE_BITS);
+        } while (!state.compareAndSet(current, next));
+        return ((next >>> SEQUENCE_BITS) << (WORKER_BITS + SEQUENCE_BITS)) | workerBits | (next & MAX_SEQUENCE);
+    }
+
+    public int getWorkerId() {
+        return (int) (workerBits >>> SEQUENCE_BITS);
+    }
+}
@@ -5,21 +5,25 @@ import com.alibaba.fastjson.JSONObject;
 import com.sky.properties.WeChatProperties;
 import com.wechat.pay.contrib.apache.httpclient.WechatPayHttpClientBuilder;
 import com.wechat.pay.contrib.apache.httpclient.util.PemUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.RandomStringUtils;
 import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.security.PrivateKey;
 import java.security.Signature;
@@ -33,6 +37,7 @@ import java.util.List;
  * 微信支付工具类
  */
 @Component
+@Slf4j
 public class WeChatPayUtil {
 
     //微信支付下单接口地址
@@ -44,34 +49,122 @@ public class WeChatPayUtil {
     @Autowired
     private WeChatProperties weChatProperties;
 
+    //检查私钥和证书文件是否有修改的间隔
+    private static final long CHECK_INTERVAL_MSEC = 60 * 1000;
+
+    //微信接口的连接池，私钥或证书更新后新建的客户端继续使用这个连接池
+    private final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+
+    private final HttpClientMetrics metrics = new HttpClientMetrics("wechatPay", connectionManager);
+
+    private volatile CloseableHttpClient httpClient;
+
+    //构造当前客户端时私钥和证书文件的修改时间
+    private long privateKeyModified;
+    private long certModified;
+
+    private volatile long lastCheckTime;
+
+    //私钥或证书文件不存在，已经记录过日志
+    private boolean filesMissing;
+
+    public WeChatPayUtil() {
+        connectionManager.setMaxTotal(50);
+        connectionManager.setDefaultMaxPerRoute(50);
+        connectionManager.setValidateAfterInactivity(2000);
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionManager.shutdown();
+    }
+
+    /**
+     * 微信接口的请求统计和连接池占用情况
+     * @return
+     */
+    public HttpClientMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * 获取调用微信接口的客户端工具对象
+     * 客户端构造一次后复用，每隔一段时间检查私钥和证书文件，有修改时重新加载
      *
      * @return
      */
-    private CloseableHttpClient getClient() {
-        PrivateKey merchantPrivateKey = null;
-        try {
-            //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
-            merchantPrivateKey = PemUtil.loadPrivateKey(new FileInputStream(new File(weChatProperties.getPrivateKeyFilePath())));
-            //加载平台证书文件
-            X509Certificate x509Certificate = PemUtil.loadCertificate(new FileInputStream(new File(weChatProperties.getWeChatPayCertFilePath())));
-            //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
-            List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
-
-            WechatPayHttpClientBuilder builder = WechatPayHttpClientBuilder.create()
-                    .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
-                    .withWechatPay(wechatPayCertificates);
-
-            // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
-            CloseableHttpClient httpClient = builder.build();
+    private CloseableHttpClient getClient() throws IOException {
+        CloseableHttpClient client = httpClient;
+        if (client != null && System.currentTimeMillis() - lastCheckTime < CHECK_INTERVAL_MSEC) {
+            return client;
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (httpClient != null && now - lastCheckTime < CHECK_INTERVAL_MSEC) {
+                return httpClient;
+            }
+            File privateKeyFile = new File(weChatProperties.getPrivateKeyFilePath());
+            File certFile = new File(weChatProperties.getWeChatPayCertFilePath());
+            long keyModified = privateKeyFile.lastModified();
+            long certFileModified = certFile.lastModified();
+            // 文件不存在时lastModified返回0，不当作修改，继续使用原来的客户端，文件恢复后再检查
+            if (httpClient != null && (keyModified == 0 || certFileModified == 0)) {
+                if (!filesMissing) {
+                    filesMissing = true;
+                    log.warn("微信支付私钥或证书文件不存在，继续使用已加载的私钥和证书");
+                }
+                lastCheckTime = now;
+                return httpClient;
+            }
+            filesMissing = false;
+            if (httpClient == null || keyModified != privateKeyModified || certFileModified != certModified) {
+                try {
+                    httpClient = buildClient(privateKeyFile, certFile);
+                    privateKeyModified = keyModified;
+                    certModified = certFileModified;
+                    log.info("微信支付私钥和证书已加载");
+                } catch (IOException | RuntimeException e) {
+                    if (httpClient == null) {
+                        throw e;
+                    }
+                    // 文件可能正在替换，继续使用原来的客户端，下次检查时重试
+                    log.warn("重新加载微信支付私钥和证书失败", e);
+                }
+            }
+            lastCheckTime = now;
             return httpClient;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return null;
         }
     }
 
+    private CloseableHttpClient buildClient(File privateKeyFile, File certFile) throws IOException {
+        PrivateKey merchantPrivateKey;
+        X509Certificate x509Certificate;
+        //merchantPrivateKey商户API私钥，如何加载商户API私钥请看常见问题
+        try (FileInputStream in = new FileInputStream(privateKeyFile)) {
+            merchantPrivateKey = PemUtil.loadPrivateKey(in);
+        }
+        //加载平台证书文件
+        try (FileInputStream in = new FileInputStream(certFile)) {
+            x509Certificate = PemUtil.loadCertificate(in);
+        }
+        //wechatPayCertificates微信支付平台证书列表。你也可以使用后面章节提到的“定时更新平台证书功能”，而不需要关心平台证书的来龙去脉
+        List<X509Certificate> wechatPayCertificates = Arrays.asList(x509Certificate);
+
+        // 通过WechatPayHttpClientBuilder构造的HttpClient，会自动的处理签名和验签
+        // 连接池由所有客户端共用，替换客户端时不需要关闭旧客户端
+        return WechatPayHttpClientBuilder.create()
+                .withMerchant(weChatProperties.getMchid(), weChatProperties.getMchSerialNo(), merchantPrivateKey)
+                .withWechatPay(wechatPayCertificates)
+                .setConnectionManager(connectionManager)
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(HttpClientUtil.TIMEOUT_MSEC)
+                        .setConnectionRequestTimeout(HttpClientUtil.TIMEOUT_MSEC)
+                        .setSocketTimeout(HttpClientUtil.TIMEOUT_MSEC)
+                        .build())
+                .build();
+    }
+
     /**
      * 发送post方式请求
      *
@@ -88,12 +181,12 @@ public class WeChatPayUtil {
         httpPost.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
         httpPost.setEntity(new StringEntity(body, "UTF-8"));
 
-        CloseableHttpResponse response = httpClient.execute(httpPost);
+        CloseableHttpResponse response = metrics.execute(httpClient, httpPost);
         try {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
+            // 关闭响应后连接回到连接池，客户端继续复用
             response.close();
         }
     }
@@ -112,12 +205,11 @@ public class WeChatPayUtil {
         httpGet.addHeader(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.toString());
         httpGet.addHeader("Wechatpay-Serial", weChatProperties.getMchSerialNo());
 
-        CloseableHttpResponse response = httpClient.execute(httpGet);
+        CloseableHttpResponse response = metrics.execute(httpClient, httpGet);
         try {
             String bodyAsString = EntityUtils.toString(response.getEntity());
             return bodyAsString;
         } finally {
-            httpClient.close();
             response.close();
         }
     }
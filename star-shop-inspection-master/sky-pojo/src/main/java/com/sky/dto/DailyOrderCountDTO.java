@@ -0,0 +1,24 @@
+package com.sky.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class DailyOrderCountDTO implements Serializable {
+    //日期
+    private LocalDate date;
+
+    //当日订单总数
+    private Integer orderCount;
+
+    //当日有效订单数
+    private Integer validOrderCount;
+}
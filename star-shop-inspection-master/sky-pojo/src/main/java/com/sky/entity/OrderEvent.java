@@ -0,0 +1,61 @@
+package com.sky.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单事件，和订单在同一个事务中写入，提交后由分发线程推送
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderEvent implements Serializable {
+
+    /**
+     * 事件类型 1来单提醒 2客户催单
+     */
+    public static final Integer NEW_ORDER = 1;
+    public static final Integer REMINDER = 2;
+
+    /**
+     * 分发状态 0待分发 1分发中 2已分发 3分发失败
+     */
+    public static final Integer PENDING = 0;
+    public static final Integer DISPATCHING = 1;
+    public static final Integer DISPATCHED = 2;
+    public static final Integer FAILED = 3;
+
+    private static final long serialVersionUID = 1L;
+
+    private Long id;
+
+    //订单id
+    private Long orderId;
+
+    //事件类型
+    private Integer type;
+
+    //推送的消息内容，写入时序列化好
+    private String payload;
+
+    //分发状态
+    private Integer status;
+
+    //领取标识，节点领取一批事件时写入，按它查询领到的事件
+    private String dispatcher;
+
+    //分发次数
+    private Integer dispatchCount;
+
+    //创建时间
+    private LocalDateTime createTime;
+
+    //最近一次领取时间
+    private LocalDateTime dispatchTime;
+}
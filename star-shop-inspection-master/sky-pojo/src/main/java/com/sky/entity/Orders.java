@@ -35,6 +35,11 @@ public class Orders implements Serializable {
     public static final Integer PAID = 1;
     public static final Integer REFUND = 2;
 
+    /**
+     * 下单后超过这个时间未支付自动取消，分钟
+     */
+    public static final Integer PAY_TIMEOUT_MINUTES = 15;
+
     private static final long serialVersionUID = 1L;
 
     private Long id;
@@ -107,4 +112,7 @@ public class Orders implements Serializable {
 
     //餐具数量状态  1按餐量提供  0选择具体数量
     private Integer tablewareStatus;
+
+    //客户端提交订单时的幂等键，同一用户内唯一，没有时为空
+    private String idempotencyKey;
 }
@@ -0,0 +1,38 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 两级缓存的命中统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsVO implements Serializable {
+    //缓存名称
+    private String cacheName;
+
+    //本地缓存命中次数
+    private Long localHits;
+
+    //本地缓存未命中次数
+    private Long localMisses;
+
+    //redis缓存命中次数
+    private Long redisHits;
+
+    //redis缓存未命中次数
+    private Long redisMisses;
+
+    //本地缓存当前条数
+    private Long localSize;
+
+    //收到的其他节点的失效消息数
+    private Long invalidationsReceived;
+}
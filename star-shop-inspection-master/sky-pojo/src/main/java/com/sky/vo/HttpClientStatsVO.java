@@ -0,0 +1,44 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 外部接口连接池的使用情况
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HttpClientStatsVO implements Serializable {
+    //连接池名称
+    private String name;
+
+    //请求次数
+    private Long requestCount;
+
+    //失败次数
+    private Long failureCount;
+
+    //平均耗时，毫秒
+    private Long averageLatencyMillis;
+
+    //最大耗时，毫秒
+    private Long maxLatencyMillis;
+
+    //正在使用的连接数
+    private Integer leased;
+
+    //空闲的连接数
+    private Integer available;
+
+    //等待连接的请求数
+    private Integer pending;
+
+    //最大连接数
+    private Integer max;
+}
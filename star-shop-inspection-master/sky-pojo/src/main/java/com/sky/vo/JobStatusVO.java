@@ -0,0 +1,45 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 集群定时任务的状态
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobStatusVO implements Serializable {
+    //任务名称
+    private String jobName;
+
+    //当前持有任务锁的节点，没有节点持有时为null
+    private String leader;
+
+    //最近一次执行的节点
+    private String lastRunNode;
+
+    //最近一次执行的令牌，每次获得锁加一
+    private Long lastFencingToken;
+
+    //最近一次开始执行的时间
+    private LocalDateTime lastStartTime;
+
+    //最近一次执行的耗时，毫秒
+    private Long lastDurationMillis;
+
+    //最近一次是否执行成功
+    private Boolean lastSuccess;
+
+    //最近一次执行失败的原因
+    private String lastError;
+
+    //本节点因其他节点持有锁而跳过的次数
+    private Long skippedOnThisNode;
+}
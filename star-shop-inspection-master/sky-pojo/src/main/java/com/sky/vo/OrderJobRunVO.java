@@ -0,0 +1,33 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 订单定时任务的一次执行记录
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderJobRunVO implements Serializable {
+    //开始时间
+    private LocalDateTime startTime;
+
+    //处理的批数
+    private Integer chunks;
+
+    //扫描的订单数
+    private Integer scanned;
+
+    //实际修改的订单数
+    private Integer updated;
+
+    //耗时，毫秒
+    private Long durationMillis;
+}
@@ -0,0 +1,44 @@
+package com.sky.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * WebSocket推送统计
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class WebSocketStatsVO implements Serializable {
+    //当前连接数
+    private Integer sessions;
+
+    //所有连接待发送的消息总数
+    private Integer queuedMessages;
+
+    //单个连接待发送消息数的最大值
+    private Integer maxQueuedMessages;
+
+    //已发送消息数
+    private Long sentMessages;
+
+    //发送失败的消息数
+    private Long failedMessages;
+
+    //因待发送消息超过上限而丢弃的消息数
+    private Long droppedMessages;
+
+    //因接收过慢被关闭的连接数
+    private Long closedSlowSessions;
+
+    //从入队到发送完成的平均耗时，毫秒
+    private Double avgSendMillis;
+
+    //从入队到发送完成的最大耗时，毫秒
+    private Double maxSendMillis;
+}
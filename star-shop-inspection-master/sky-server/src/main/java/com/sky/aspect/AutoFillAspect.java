@@ -9,13 +9,12 @@ import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
-import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.time.LocalDateTime;
-import java.util.Arrays;
 
 /**
  * 自定义切面类，实现公共字段自动填充
@@ -25,6 +24,14 @@ import java.util.Arrays;
 @Slf4j
 public class AutoFillAspect {
 
+    //每个实体类的setter只查找一次，之后直接调用缓存的MethodHandle
+    private static final ClassValue<Setters> SETTERS = new ClassValue<Setters>() {
+        @Override
+        protected Setters computeValue(Class<?> type) {
+            return new Setters(type);
+        }
+    };
+
     /**
      * 切入点
      */
@@ -33,15 +40,13 @@ public class AutoFillAspect {
 
     /**
      *  通知：增强功能
-     *  前置通知
+     *  前置通知，注解直接绑定为参数，不再每次反射读取
      */
-    @Before(("autoFillPointCut()"))
-    public void autoFill(JoinPoint joinPoint) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    @Before("autoFillPointCut() && @annotation(autoFill)")
+    public void autoFill(JoinPoint joinPoint, AutoFill autoFill) throws Throwable {
 
         // 获取操作类型和参数
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-        AutoFill annotation = signature.getMethod().getAnnotation(AutoFill.class);
-        OperationType type = annotation.value();
+        OperationType type = autoFill.value();
 
         Object[] args = joinPoint.getArgs();
         if (args==null || args.length==0) {
@@ -51,17 +56,43 @@ public class AutoFillAspect {
         // 获取时间和操作人id
         LocalDateTime now = LocalDateTime.now();
         Long empId = BaseContext.getCurrentId();
-        // 通过反射填充
-        Class clazz = arg.getClass();
-        Method setUpdateUser = clazz.getMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
-        Method setUpdateTime = clazz.getMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
-        setUpdateUser.invoke(arg, empId);
-        setUpdateTime.invoke(arg, now);
+        // 通过缓存的MethodHandle填充
+        Setters setters = SETTERS.get(arg.getClass());
+        setters.setUpdateUser.invokeExact(arg, (Object) empId);
+        setters.setUpdateTime.invokeExact(arg, (Object) now);
         if (type == OperationType.INSERT) {
-            Method setCreateUser = clazz.getMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
-            Method setCreateTime = clazz.getMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
-            setCreateTime.invoke(arg, now);
-            setCreateUser.invoke(arg, empId);
+            setters.setCreateTime.invokeExact(arg, (Object) now);
+            setters.setCreateUser.invokeExact(arg, (Object) empId);
+        }
+    }
+
+    /**
+     * 实体类的四个公共字段setter，类型统一转换为(Object, Object)void以便invokeExact调用
+     */
+    private static class Setters {
+
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final MethodHandle setCreateTime;
+        private final MethodHandle setUpdateTime;
+        private final MethodHandle setCreateUser;
+        private final MethodHandle setUpdateUser;
+
+        Setters(Class<?> type) {
+            setCreateTime = find(type, AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            setUpdateTime = find(type, AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+            setCreateUser = find(type, AutoFillConstant.SET_CREATE_USER, Long.class);
+            setUpdateUser = find(type, AutoFillConstant.SET_UPDATE_USER, Long.class);
+        }
+
+        private static MethodHandle find(Class<?> type, String name, Class<?> parameterType) {
+            try {
+                return MethodHandles.publicLookup()
+                        .unreflect(type.getMethod(name, parameterType))
+                        .asType(SETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalStateException(type.getName() + "缺少公共字段方法" + name, e);
+            }
         }
     }
 }
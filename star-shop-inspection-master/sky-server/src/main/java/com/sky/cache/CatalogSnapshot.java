@@ -0,0 +1,43 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+
+import java.util.Map;
+
+/**
+ * 某一版本的菜品和套餐价格目录，创建后不再修改，可以被多个线程同时读取
+ */
+public class CatalogSnapshot {
+
+    private final long version;
+
+    private final long loadTime;
+
+    private final Map<Long, Dish> dishes;
+
+    private final Map<Long, Setmeal> setmeals;
+
+    public CatalogSnapshot(long version, long loadTime, Map<Long, Dish> dishes, Map<Long, Setmeal> setmeals) {
+        this.version = version;
+        this.loadTime = loadTime;
+        this.dishes = dishes;
+        this.setmeals = setmeals;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    public Dish getDish(Long id) {
+        return dishes.get(id);
+    }
+
+    public Setmeal getSetmeal(Long id) {
+        return setmeals.get(id);
+    }
+}
@@ -0,0 +1,143 @@
+package com.sky.cache;
+
+import com.sky.entity.Dish;
+import com.sky.entity.Setmeal;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.sky.properties.OrderPricingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 持有当前的价格目录
+ * 菜品或套餐改动提交后递增redis中的目录版本号并通知所有节点，各节点在下次使用时发现版本落后再重新加载
+ */
+@Component
+@Slf4j
+public class CatalogSnapshotHolder implements MessageListener {
+
+    private static final String VERSION_KEY = "sky:catalog:version";
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private OrderPricingProperties orderPricingProperties;
+
+    private volatile CatalogSnapshot snapshot;
+
+    //收到的最新目录版本号
+    private volatile long latestVersion;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(orderPricingProperties.getCatalogChannel()));
+    }
+
+    /**
+     * 获取当前的价格目录，版本落后或超过最长使用时间时重新加载
+     * @return
+     */
+    public CatalogSnapshot get() {
+        CatalogSnapshot current = snapshot;
+        if (current == null || isStale(current)) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || isStale(current)) {
+                    current = load();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 菜品或套餐改动后调用，在事务中调用时等事务提交后再通知
+     */
+    public void changed() {
+        Runnable action = () -> {
+            try {
+                Long version = stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+                latestVersion = Math.max(latestVersion, version);
+                stringRedisTemplate.convertAndSend(orderPricingProperties.getCatalogChannel(), String.valueOf(version));
+            } catch (Exception e) {
+                // 通知失败时各节点最多在最长使用时间后重新加载
+                log.warn("发送价格目录改动通知失败", e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            long version = Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+            latestVersion = Math.max(latestVersion, version);
+        } catch (NumberFormatException e) {
+            log.warn("无法解析价格目录改动通知：{}", message);
+        }
+    }
+
+    private boolean isStale(CatalogSnapshot current) {
+        return current.getVersion() < latestVersion
+                || System.currentTimeMillis() - current.getLoadTime() > TimeUnit.SECONDS.toMillis(orderPricingProperties.getCatalogMaxAgeSeconds());
+    }
+
+    /**
+     * 先读版本号再读数据库，加载期间的改动会使版本号落后，下次使用时再次加载
+     */
+    private CatalogSnapshot load() {
+        long version = 0;
+        try {
+            String value = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+            version = value == null ? 0 : Long.parseLong(value);
+        } catch (Exception e) {
+            // 读不到版本号时按已知的最新版本加载，避免每次使用都重新加载
+            version = latestVersion;
+            log.warn("读取价格目录版本号失败", e);
+        }
+        latestVersion = Math.max(latestVersion, version);
+
+        List<Dish> dishList = dishMapper.listForCatalog();
+        Map<Long, Dish> dishes = new HashMap<>(dishList.size() * 2);
+        dishList.forEach(dish -> dishes.put(dish.getId(), dish));
+        List<Setmeal> setmealList = setmealMapper.listForCatalog();
+        Map<Long, Setmeal> setmeals = new HashMap<>(setmealList.size() * 2);
+        setmealList.forEach(setmeal -> setmeals.put(setmeal.getId(), setmeal));
+
+        log.info("价格目录已加载，版本：{}，菜品：{}，套餐：{}", version, dishes.size(), setmeals.size());
+        return new CatalogSnapshot(version, System.currentTimeMillis(),
+                Collections.unmodifiableMap(dishes), Collections.unmodifiableMap(setmeals));
+    }
+}
@@ -0,0 +1,115 @@
+package com.sky.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.impl.DefaultClaims;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌校验结果缓存
+ * 同一个令牌只在第一次使用时校验签名，之后直接返回解析结果，缓存在令牌过期时同时失效
+ * 以令牌的SHA-256摘要为键，不在内存中保存完整令牌，修改过载荷或签名的令牌不会命中缓存
+ * 返回的载荷在请求之间共享，是只读的
+ */
+@Component
+public class JwtClaimsCache {
+
+    @Autowired
+    private JwtProperties jwtProperties;
+
+    private JwtParser adminParser;
+    private JwtParser userParser;
+
+    private Cache<String, Claims> adminCache;
+    private Cache<String, Claims> userCache;
+
+    @PostConstruct
+    public void init() {
+        adminParser = JwtUtil.createParser(jwtProperties.getAdminSecretKey());
+        userParser = JwtUtil.createParser(jwtProperties.getUserSecretKey());
+        adminCache = buildCache(jwtProperties.getAdminTtl());
+        userCache = buildCache(jwtProperties.getUserTtl());
+    }
+
+    /**
+     * 校验管理端令牌
+     * @param token
+     * @return
+     */
+    public Claims parseAdmin(String token) {
+        return parse(adminCache, adminParser, token);
+    }
+
+    /**
+     * 校验用户端令牌
+     * @param token
+     * @return
+     */
+    public Claims parseUser(String token) {
+        return parse(userCache, userParser, token);
+    }
+
+    private Claims parse(Cache<String, Claims> cache, JwtParser parser, String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("令牌为空");
+        }
+        String key = digest(token);
+        Claims claims = cache.getIfPresent(key);
+        if (claims == null) {
+            // 校验失败时抛出异常，不缓存无效令牌
+            claims = new DefaultClaims(Collections.unmodifiableMap(new LinkedHashMap<>(parser.parseClaimsJws(token).getBody())));
+            cache.put(key, claims);
+        }
+        return claims;
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // 每个java平台都必须支持SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Cache<String, Claims> buildCache(long ttlMillis) {
+        return Caffeine.newBuilder()
+                .maximumSize(jwtProperties.getCacheMaxSize())
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        long remainMillis = expiration == null ? ttlMillis : expiration.getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+}
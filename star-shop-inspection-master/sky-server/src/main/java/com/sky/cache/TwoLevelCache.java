@@ -0,0 +1,173 @@
+package com.sky.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 两级缓存：先查本节点内存，未命中再查redis，redis命中后回填内存
+ * 修改和删除同时作用于两级，并通过redis频道通知其他节点删除各自的内存缓存
+ */
+public class TwoLevelCache implements Cache {
+
+    private final String name;
+
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache;
+
+    private final Cache redisCache;
+
+    private final TwoLevelCacheManager cacheManager;
+
+    //本地缓存每被清理一次加一，查询redis期间被清理过时不回填，避免把旧数据放回内存
+    private final AtomicLong localVersion = new AtomicLong();
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder localMisses = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder redisMisses = new LongAdder();
+    private final LongAdder invalidationsReceived = new LongAdder();
+
+    public TwoLevelCache(String name, com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache,
+                         Cache redisCache, TwoLevelCacheManager cacheManager) {
+        this.name = name;
+        this.localCache = localCache;
+        this.redisCache = redisCache;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = String.valueOf(key);
+        ValueWrapper wrapper = localCache.getIfPresent(localKey);
+        if (wrapper != null) {
+            localHits.increment();
+            return wrapper;
+        }
+        localMisses.increment();
+
+        long version = localVersion.get();
+        wrapper = redisCache.get(key);
+        if (wrapper == null) {
+            redisMisses.increment();
+            return null;
+        }
+        redisHits.increment();
+        if (version == localVersion.get()) {
+            localCache.put(localKey, wrapper);
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("缓存的值不是" + type.getName() + "类型：" + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        localCache.put(String.valueOf(key), new SimpleValueWrapper(value));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        localCache.put(String.valueOf(key), existing != null ? existing : new SimpleValueWrapper(value));
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        evictLocal(String.valueOf(key));
+        cacheManager.publishInvalidation(name, String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        clearLocal();
+        cacheManager.publishInvalidation(name, null);
+    }
+
+    /**
+     * 只删除本节点内存中的缓存，收到其他节点的失效消息时调用
+     * @param key
+     */
+    void evictLocal(String key) {
+        localVersion.incrementAndGet();
+        localCache.invalidate(key);
+    }
+
+    /**
+     * 只清空本节点内存中的缓存，收到其他节点的失效消息时调用
+     */
+    void clearLocal() {
+        localVersion.incrementAndGet();
+        localCache.invalidateAll();
+    }
+
+    void invalidationReceived() {
+        invalidationsReceived.increment();
+    }
+
+    long getLocalHits() {
+        return localHits.sum();
+    }
+
+    long getLocalMisses() {
+        return localMisses.sum();
+    }
+
+    long getRedisHits() {
+        return redisHits.sum();
+    }
+
+    long getRedisMisses() {
+        return redisMisses.sum();
+    }
+
+    long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+
+    long getInvalidationsReceived() {
+        return invalidationsReceived.sum();
+    }
+}
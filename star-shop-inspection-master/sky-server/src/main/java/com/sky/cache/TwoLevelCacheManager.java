@@ -0,0 +1,127 @@
+package com.sky.cache;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sky.properties.CacheProperties;
+import com.sky.vo.CacheStatsVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 两级缓存管理器，同时监听缓存失效频道，删除其他节点修改过的本地缓存
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    //本节点标识，收到自己发出的失效消息时忽略
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisCacheManager redisCacheManager;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final CacheProperties cacheProperties;
+
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(RedisCacheManager redisCacheManager, StringRedisTemplate stringRedisTemplate,
+                                CacheProperties cacheProperties) {
+        this.redisCacheManager = redisCacheManager;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.cacheProperties = cacheProperties;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    private TwoLevelCache createCache(String name) {
+        com.github.benmanes.caffeine.cache.Cache<String, Cache.ValueWrapper> localCache = Caffeine.newBuilder()
+                .maximumSize(cacheProperties.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(cacheProperties.getLocalExpireSeconds()))
+                .build();
+        return new TwoLevelCache(name, localCache, redisCacheManager.getCache(name), this);
+    }
+
+    /**
+     * 通知其他节点删除本地缓存
+     * @param cacheName
+     * @param key 为null时清空整个缓存
+     */
+    void publishInvalidation(String cacheName, String key) {
+        JSONObject message = new JSONObject();
+        message.put("nodeId", nodeId);
+        message.put("cacheName", cacheName);
+        message.put("key", key);
+        try {
+            stringRedisTemplate.convertAndSend(cacheProperties.getInvalidationChannel(), message.toJSONString());
+        } catch (Exception e) {
+            //消息发送失败时其他节点的本地缓存会在过期后自动失效
+            log.warn("发送缓存失效消息失败：{}", message, e);
+        }
+    }
+
+    /**
+     * 收到缓存失效消息
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject json = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (nodeId.equals(json.getString("nodeId"))) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(json.getString("cacheName"));
+        if (cache == null) {
+            return;
+        }
+        cache.invalidationReceived();
+        String key = json.getString("key");
+        if (key == null) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(key);
+        }
+    }
+
+    /**
+     * 各缓存的命中统计
+     * @return
+     */
+    public List<CacheStatsVO> getStats() {
+        List<CacheStatsVO> statsList = new ArrayList<>();
+        caches.forEach((name, cache) -> statsList.add(CacheStatsVO.builder()
+                .cacheName(name)
+                .localHits(cache.getLocalHits())
+                .localMisses(cache.getLocalMisses())
+                .redisHits(cache.getRedisHits())
+                .redisMisses(cache.getRedisMisses())
+                .localSize(cache.getLocalSize())
+                .invalidationsReceived(cache.getInvalidationsReceived())
+                .build()));
+        return statsList;
+    }
+}
@@ -0,0 +1,41 @@
+package com.sky.config;
+
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.properties.CacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.time.Duration;
+
+/**
+ * 配置两级缓存，@Cacheable和@CacheEvict都经过这里
+ */
+@Configuration
+@Slf4j
+public class CacheConfiguration {
+
+    @Bean
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory factory,
+                                             StringRedisTemplate stringRedisTemplate,
+                                             RedisMessageListenerContainer redisMessageListenerContainer,
+                                             CacheProperties cacheProperties) {
+        log.info("开始创建两级缓存管理器：{}", cacheProperties);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(factory)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .entryTtl(Duration.ofMinutes(cacheProperties.getRedisTtlMinutes())))
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate, cacheProperties);
+        redisMessageListenerContainer.addMessageListener(cacheManager,
+                new ChannelTopic(cacheProperties.getInvalidationChannel()));
+        return cacheManager;
+    }
+}
@@ -0,0 +1,65 @@
+package com.sky.config;
+
+import com.sky.properties.OrderEventProperties;
+import com.sky.properties.ReportProperties;
+import com.sky.properties.WeChatLoginProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 配置类，注册业务使用的线程池
+ */
+@Configuration
+@Slf4j
+public class ExecutorConfiguration {
+
+    /**
+     * 报表导出线程池，线程数和排队数都有上限，超出时拒绝提交
+     * @param reportProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor reportExportExecutor(ReportProperties reportProperties) {
+        log.info("创建报表导出线程池：{}", reportProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(reportProperties.getExportThreads());
+        executor.setMaxPoolSize(reportProperties.getExportThreads());
+        executor.setQueueCapacity(reportProperties.getExportQueueCapacity());
+        executor.setThreadNamePrefix("report-export-");
+        return executor;
+    }
+
+    /**
+     * 订单事件分发线程池，排队数和线程数相同，每个分发任务都会领取到排队期间新写入的事件，多余的提交直接丢弃
+     * @param orderEventProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor orderEventExecutor(OrderEventProperties orderEventProperties) {
+        log.info("创建订单事件分发线程池：{}", orderEventProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(orderEventProperties.getDispatchThreads());
+        executor.setMaxPoolSize(orderEventProperties.getDispatchThreads());
+        executor.setQueueCapacity(orderEventProperties.getDispatchThreads());
+        executor.setThreadNamePrefix("order-event-");
+        return executor;
+    }
+
+    /**
+     * 微信登录接口调用线程池，线程数和排队数都有上限，超出时拒绝提交
+     * @param weChatLoginProperties
+     * @return
+     */
+    @Bean
+    public ThreadPoolTaskExecutor weChatLoginExecutor(WeChatLoginProperties weChatLoginProperties) {
+        log.info("创建微信登录线程池：{}", weChatLoginProperties);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(weChatLoginProperties.getThreads());
+        executor.setMaxPoolSize(weChatLoginProperties.getThreads());
+        executor.setQueueCapacity(weChatLoginProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("wechat-login-");
+        return executor;
+    }
+}
@@ -12,6 +12,7 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import org.apache.ibatis.annotations.Delete;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -25,6 +26,7 @@ public class DishController {
     DishService dishService;
 
     @PostMapping
+    @CacheEvict(cacheNames = "dishCache", key = "#dishDTO.categoryId")
     public Result save(@RequestBody DishDTO dishDTO) {
         dishService.save(dishDTO);
         return Result.success();
@@ -37,6 +39,7 @@ public class DishController {
     }
 
     @DeleteMapping
+    @CacheEvict(cacheNames = "dishCache", allEntries = true) //删除的菜品可能属于多个分类
     public Result delete(@RequestParam List<Long> ids) {
         dishService.deleteBatch(ids);
         return Result.success();
@@ -50,6 +53,7 @@ public class DishController {
     }
 
     @PutMapping
+    @CacheEvict(cacheNames = "dishCache", allEntries = true) //修改时菜品可能换了分类
     public Result update(@RequestBody DishDTO dishDTO) {
         dishService.updateWithFlavor(dishDTO);
         return Result.success();
@@ -62,4 +66,12 @@ public class DishController {
         return Result.success(dishList);
 
     }
+
+    @PostMapping("/status/{status}")
+    @ApiOperation("菜品起售停售")
+    @CacheEvict(cacheNames = "dishCache", allEntries = true)
+    public Result startOrStop(@PathVariable Integer status, Long id) {
+        dishService.startOrStop(status, id);
+        return Result.success();
+    }
 }
@@ -0,0 +1,119 @@
+package com.sky.controller.admin;
+
+import com.sky.cache.TwoLevelCacheManager;
+import com.sky.result.Result;
+import com.sky.service.JobCoordinatorService;
+import com.sky.service.OrderAutoCompleteService;
+import com.sky.utils.HttpClientMetrics;
+import com.sky.utils.HttpClientUtil;
+import com.sky.utils.WeChatPayUtil;
+import com.sky.vo.CacheStatsVO;
+import com.sky.vo.HttpClientStatsVO;
+import com.sky.vo.JobStatusVO;
+import com.sky.vo.OrderJobRunVO;
+import com.sky.vo.WebSocketStatsVO;
+import com.sky.websocket.WebSocketServer;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 运行状态监控
+ */
+@RestController
+@RequestMapping("/admin/monitor")
+@Api(tags = "运行状态监控接口")
+public class MonitorController {
+
+    @Autowired
+    private TwoLevelCacheManager cacheManager;
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private OrderAutoCompleteService orderAutoCompleteService;
+
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+
+    @Autowired
+    private WeChatPayUtil weChatPayUtil;
+
+    /**
+     * 查询两级缓存各自的命中情况
+     * @return
+     */
+    @GetMapping("/cache")
+    @ApiOperation("查询缓存命中统计")
+    public Result<List<CacheStatsVO>> cacheStats() {
+        return Result.success(cacheManager.getStats());
+    }
+
+    /**
+     * 查询WebSocket推送的队列和耗时
+     * @return
+     */
+    @GetMapping("/websocket")
+    @ApiOperation("查询WebSocket推送统计")
+    public Result<WebSocketStatsVO> webSocketStats() {
+        return Result.success(webSocketServer.getStats());
+    }
+
+    /**
+     * 查询最近几次自动完成派送中订单的执行记录
+     * @return
+     */
+    @GetMapping("/autoComplete")
+    @ApiOperation("查询订单自动完成任务的执行记录")
+    public Result<List<OrderJobRunVO>> autoCompleteRuns() {
+        return Result.success(orderAutoCompleteService.listRecentRuns());
+    }
+
+    /**
+     * 查询集群定时任务当前由哪个节点执行以及最近一次的执行情况
+     * @return
+     */
+    @GetMapping("/jobs")
+    @ApiOperation("查询集群定时任务状态")
+    public Result<List<JobStatusVO>> jobStatus() {
+        return Result.success(jobCoordinatorService.listJobStatus());
+    }
+
+    /**
+     * 查询调用微信等外部接口的连接池和耗时
+     * @return
+     */
+    @GetMapping("/httpClient")
+    @ApiOperation("查询外部接口连接池统计")
+    public Result<List<HttpClientStatsVO>> httpClientStats() {
+        List<HttpClientStatsVO> stats = Arrays.asList(HttpClientUtil.getMetrics(), weChatPayUtil.getMetrics())
+                .stream()
+                .map(this::toStatsVO)
+                .collect(Collectors.toList());
+        return Result.success(stats);
+    }
+
+    private HttpClientStatsVO toStatsVO(HttpClientMetrics metrics) {
+        PoolStats poolStats = metrics.getPoolStats();
+        return HttpClientStatsVO.builder()
+                .name(metrics.getName())
+                .requestCount(metrics.getRequestCount())
+                .failureCount(metrics.getFailureCount())
+                .averageLatencyMillis(metrics.getAverageLatencyMillis())
+                .maxLatencyMillis(metrics.getMaxLatencyMillis())
+                .leased(poolStats.getLeased())
+                .available(poolStats.getAvailable())
+                .pending(poolStats.getPending())
+                .max(poolStats.getMax())
+                .build();
+    }
+}
@@ -1,8 +1,10 @@
 package com.sky.controller.admin;
 
 import com.sky.result.Result;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
 import com.sky.vo.OrderReportVO;
+import com.sky.vo.ReportExportJobVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
@@ -10,6 +12,8 @@ import io.swagger.annotations.ApiOperation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -23,6 +27,9 @@ public class ReportController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private BusinessStatsService businessStatsService;
+
     @GetMapping("/turnoverStatistics")
     public Result<TurnoverReportVO> turnoverStatistics(@DateTimeFormat(pattern = "yyyy-MM-dd")
                                                  LocalDate begin,
@@ -60,8 +67,76 @@ public class ReportController {
         return Result.success(reportService.getSalesTop10(begin,end));
     }
 
+    /**
+     * 导出运营数据报表，不传日期时导出最近30天
+     * @param begin
+     * @param end
+     * @param response
+     */
     @GetMapping("/export")
-    public void export(HttpServletResponse response) {
-        reportService.exportBusinessData(response);
+    @ApiOperation("导出运营数据报表")
+    public void export(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                       @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end,
+                       HttpServletResponse response) {
+        if (begin == null || end == null) {
+            end = LocalDate.now().minusDays(1);
+            begin = end.minusDays(29);
+        }
+        reportService.exportBusinessData(begin, end, response);
+    }
+
+    /**
+     * 提交导出任务，在后台线程中生成报表，前端轮询任务状态后下载
+     * @param begin
+     * @param end
+     * @return
+     */
+    @PostMapping("/export/jobs")
+    @ApiOperation("提交运营数据报表导出任务")
+    public Result<ReportExportJobVO> submitExportJob(@DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+                                                     @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end) {
+        if (begin == null || end == null) {
+            end = LocalDate.now().minusDays(1);
+            begin = end.minusDays(29);
+        }
+        return Result.success(reportService.submitExportJob(begin, end));
+    }
+
+    /**
+     * 查询导出任务状态
+     * @param jobId
+     * @return
+     */
+    @GetMapping("/export/jobs/{jobId}")
+    @ApiOperation("查询报表导出任务")
+    public Result<ReportExportJobVO> getExportJob(@PathVariable String jobId) {
+        return Result.success(reportService.getExportJob(jobId));
+    }
+
+    /**
+     * 下载已完成的导出任务文件
+     * @param jobId
+     * @param response
+     */
+    @GetMapping("/export/jobs/{jobId}/file")
+    @ApiOperation("下载报表导出文件")
+    public void downloadExportJob(@PathVariable String jobId, HttpServletResponse response) {
+        reportService.downloadExportJob(jobId, response);
+    }
+
+    /**
+     * 根据订单表和用户表重建每日营业数据，用于首次上线回填历史数据或手动校正
+     * 重建在后台执行，接口提交后立即返回
+     * @param begin
+     * @param end
+     * @return
+     */
+    @PostMapping("/rebuildStats")
+    @ApiOperation("重建每日营业数据")
+    public Result rebuildStats(
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate begin,
+            @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate end){
+        businessStatsService.submitRebuild(begin, end);
+        return Result.success();
     }
 }
@@ -16,8 +16,9 @@ public class OrderController {
     OrderService orderService;
 
     @PostMapping("/submit")
-    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO) {
-        OrderSubmitVO orderSubmitVO = orderService.submitOrder(ordersSubmitDTO);
+    public Result<OrderSubmitVO> submit(@RequestBody OrdersSubmitDTO ordersSubmitDTO,
+                                        @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        OrderSubmitVO orderSubmitVO = orderService.submitOrder(ordersSubmitDTO, idempotencyKey);
         return Result.success(orderSubmitVO);
     }
 
@@ -23,6 +23,12 @@ public class ShoppingCartController {
         return Result.success();
     }
 
+    @PostMapping("/sub")
+    public Result sub(@RequestBody ShoppingCartDTO shoppingCartDTO) {
+        shoppingCartService.subShoppingCart(shoppingCartDTO);
+        return Result.success();
+    }
+
     @GetMapping("/list")
     public Result<List<ShoppingCart>> list() {
         List<ShoppingCart> cart = shoppingCartService.list(BaseContext.getCurrentId());
@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/user/user")
@@ -27,21 +28,21 @@ public class UserController {
     JwtProperties jwtProperties;
 
     @PostMapping("/login")
-    public Result<UserLoginVO> login(@RequestBody UserLoginDTO userLoginDTO) {
-
-        //微信登录
-        User user = userService.login(userLoginDTO);//后绪步骤实现
-
-        //为微信用户生成jwt令牌
-        Map<String, Object> claims = new HashMap<>();
-        claims.put(JwtClaimsConstant.USER_ID,user.getId());
-        String token = JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims);
-
-        UserLoginVO userLoginVO = UserLoginVO.builder()
-                .id(user.getId())
-                .openid(user.getOpenid())
-                .token(token)
-                .build();
-        return Result.success(userLoginVO);
+    public CompletableFuture<Result<UserLoginVO>> login(@RequestBody UserLoginDTO userLoginDTO) {
+
+        //微信登录，等待微信接口期间不占用请求线程
+        return userService.login(userLoginDTO).thenApply(user -> {
+            //为微信用户生成jwt令牌
+            Map<String, Object> claims = new HashMap<>();
+            claims.put(JwtClaimsConstant.USER_ID,user.getId());
+            String token = JwtUtil.createJWT(jwtProperties.getUserSecretKey(), jwtProperties.getUserTtl(), claims);
+
+            UserLoginVO userLoginVO = UserLoginVO.builder()
+                    .id(user.getId())
+                    .openid(user.getOpenid())
+                    .token(token)
+                    .build();
+            return Result.success(userLoginVO);
+        });
     }
 }
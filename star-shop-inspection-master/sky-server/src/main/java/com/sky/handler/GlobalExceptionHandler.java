@@ -2,9 +2,12 @@ package com.sky.handler;
 
 import com.sky.constant.MessageConstant;
 import com.sky.exception.BaseException;
+import com.sky.exception.DateRangeException;
 import com.sky.result.Result;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 /**
@@ -25,6 +28,18 @@ public class GlobalExceptionHandler {
         return Result.error(ex.getMessage());
     }
 
+    /**
+     * 日期区间参数不合法，按请求参数错误返回400
+     * @param ex
+     * @return
+     */
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Result dateRangeHandler(DateRangeException ex){
+        log.warn("日期区间不合法：{}", ex.getMessage());
+        return Result.error(ex.getMessage());
+    }
+
     @ExceptionHandler
     public Result employeeExistsHandler(Exception e) {
         String msg = e.getMessage();
@@ -1,9 +1,9 @@
 package com.sky.interceptor;
 
+import com.sky.cache.JwtClaimsCache;
 import com.sky.constant.JwtClaimsConstant;
 import com.sky.context.BaseContext;
 import com.sky.properties.JwtProperties;
-import com.sky.utils.JwtUtil;
 import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +19,8 @@ import javax.servlet.http.HttpServletResponse;
 public class JwtTokenUserInterceptor implements HandlerInterceptor {
     @Autowired
     private JwtProperties jwtProperties;
+    @Autowired
+    private JwtClaimsCache jwtClaimsCache;
 
     /**
      * 校验jwt
@@ -41,11 +43,10 @@ public class JwtTokenUserInterceptor implements HandlerInterceptor {
 
         //2、校验令牌
         try {
-            log.info("jwt校验:{}", token);
-            Claims claims = JwtUtil.parseJWT(jwtProperties.getUserSecretKey(), token);
+            Claims claims = jwtClaimsCache.parseUser(token);
             Long userid = Long.valueOf(claims.get(JwtClaimsConstant.USER_ID).toString());
             BaseContext.setCurrentId(userid);
-            log.info("当前用户id：", userid);
+            log.debug("当前用户id：{}", userid);
             //3、通过，放行
             return true;
         } catch (Exception ex) {
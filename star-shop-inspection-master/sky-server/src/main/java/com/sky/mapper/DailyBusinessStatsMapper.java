@@ -0,0 +1,50 @@
+package com.sky.mapper;
+
+import com.sky.entity.DailyBusinessStats;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface DailyBusinessStatsMapper {
+
+    /**
+     * 在当天的汇总数据上累加增量，当天没有数据时插入
+     * @param delta
+     */
+    void increment(DailyBusinessStats delta);
+
+    /**
+     * 锁定一批日期的汇总数据行，没有数据的日期先插入0再锁定，用于重建
+     * 锁定期间其他事务的累加会等待重建提交后再执行
+     * @param statsList
+     */
+    void lockBatch(List<DailyBusinessStats> statsList);
+
+    /**
+     * 批量覆盖写入汇总数据，用于重建
+     * @param statsList
+     */
+    void upsertBatch(List<DailyBusinessStats> statsList);
+
+    /**
+     * 查询日期区间内的汇总数据，没有数据的日期不会返回
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> listByDate(@Param("begin") LocalDate begin, @Param("end") LocalDate end);
+
+    /**
+     * 查询日期区间内汇总数据的最后更新时间，作为区间数据的版本
+     * @param begin
+     * @param end
+     * @return
+     */
+    @Select("select max(update_time) from daily_business_stats where stat_date >= #{begin} and stat_date <= #{end}")
+    LocalDateTime getLastUpdateTime(@Param("begin") LocalDate begin, @Param("end") LocalDate end);
+}
@@ -22,4 +22,11 @@ public interface DishFlavorMapper {
 
     @Select("select * from dish_flavor where dish_id = #{id}")
     List<DishFlavor> getByDishId(Long id);
+
+    /**
+     * 根据多个菜品id一次查询口味
+     * @param dishIds
+     * @return
+     */
+    List<DishFlavor> getByDishIds(@Param("dishIds") List<Long> dishIds);
 }
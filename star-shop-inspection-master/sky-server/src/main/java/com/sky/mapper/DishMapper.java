@@ -3,6 +3,7 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
 import com.sky.dto.DishPageQueryDTO;
+import com.sky.dto.StatusCountDTO;
 import com.sky.entity.Dish;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishItemVO;
@@ -94,4 +95,18 @@ public interface DishMapper {
     Integer countBymap(Map map);
 
     Integer countByMap(Map map);
+
+    /**
+     * 按状态分组统计菜品数量
+     * @return
+     */
+    @Select("select status, count(id) count from dish group by status")
+    List<StatusCountDTO> countByStatus();
+
+    /**
+     * 查询所有菜品的价格目录字段
+     * @return
+     */
+    @Select("select id, name, image, price, status from dish")
+    List<Dish> listForCatalog();
 }
@@ -0,0 +1,22 @@
+package com.sky.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+@Mapper
+public interface JobFenceMapper {
+
+    /**
+     * 任务第一次写入时插入栅栏行，已存在时忽略
+     * @param jobName
+     */
+    void insertIgnore(@Param("jobName") String jobName);
+
+    /**
+     * 令牌不小于栅栏中的令牌时写入令牌，需要在任务的写入事务中调用
+     * @param jobName
+     * @param token
+     * @return 0表示已有更新令牌的持有者写入过
+     */
+    int advance(@Param("jobName") String jobName, @Param("token") Long token);
+}
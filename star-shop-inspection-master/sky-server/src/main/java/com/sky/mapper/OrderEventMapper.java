@@ -0,0 +1,64 @@
+package com.sky.mapper;
+
+import com.sky.entity.OrderEvent;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface OrderEventMapper {
+
+    /**
+     * 插入事件
+     * @param orderEvent
+     */
+    void insert(OrderEvent orderEvent);
+
+    /**
+     * 领取一批待分发的事件，以及领取后超时未完成、分发次数未达上限的事件
+     * 用一条update领取，多个节点同时领取时同一个事件只会被一个节点领到
+     * @param dispatcher 本次领取的标识
+     * @param now
+     * @param retryBefore 在这之前领取且仍未完成的事件可以重新领取
+     * @param maxDispatchCount 最多分发次数
+     * @param limit
+     * @return 领到的事件数
+     */
+    int claim(@Param("dispatcher") String dispatcher, @Param("now") LocalDateTime now,
+              @Param("retryBefore") LocalDateTime retryBefore, @Param("maxDispatchCount") int maxDispatchCount,
+              @Param("limit") int limit);
+
+    /**
+     * 把领取后超时未完成且分发次数已达上限的事件标记为分发失败
+     * @param retryBefore
+     * @param maxDispatchCount
+     * @return 标记的事件数
+     */
+    int markFailed(@Param("retryBefore") LocalDateTime retryBefore, @Param("maxDispatchCount") int maxDispatchCount);
+
+    /**
+     * 查询某次领取到的事件
+     * @param dispatcher
+     * @return
+     */
+    @Select("select * from order_event where dispatcher = #{dispatcher} and status = 1 order by id")
+    List<OrderEvent> listByDispatcher(String dispatcher);
+
+    /**
+     * 把事件标记为已分发
+     * @param ids
+     */
+    void markDispatched(@Param("ids") List<Long> ids);
+
+    /**
+     * 删除指定时间之前创建的已分发事件
+     * @param before
+     * @return
+     */
+    @Delete("delete from order_event where status = 2 and create_time < #{before}")
+    int deleteDispatchedBefore(LocalDateTime before);
+}
@@ -1,6 +1,9 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyOrderCountDTO;
+import com.sky.dto.DailyTurnoverDTO;
 import com.sky.dto.GoodsSalesDTO;
+import com.sky.dto.StatusCountDTO;
 import com.sky.entity.Orders;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
@@ -21,15 +24,104 @@ public interface OrderMapper {
 
     void update(Orders orders);
 
+    /**
+     * 按id顺序分页查询指定时间之前下单、处于指定状态的订单，只查询id、下单时间和金额
+     * @param status
+     * @param orderTime
+     * @param lastId 上一页最后一个订单的id
+     * @param limit
+     * @return
+     */
+    @Select("select id, order_time, amount from orders " +
+            "where status = #{status} and order_time < #{orderTime} and id > #{lastId} order by id limit #{limit}")
+    List<Orders> listByStatusAfterId(@Param("status") Integer status, @Param("orderTime") LocalDateTime orderTime,
+                                     @Param("lastId") Long lastId, @Param("limit") int limit);
+
+    /**
+     * 按id分页查询指定状态且下单时间早于orderTime的订单id
+     * @param status
+     * @param orderTime
+     * @param lastId 上一页最后一个订单的id
+     * @param limit
+     * @return
+     */
+    @Select("select id from orders " +
+            "where status = #{status} and order_time < #{orderTime} and id > #{lastId} order by id limit #{limit}")
+    List<Long> listIdsByStatusAfterId(@Param("status") Integer status, @Param("orderTime") LocalDateTime orderTime,
+                                      @Param("lastId") Long lastId, @Param("limit") int limit);
+
+    /**
+     * 按主键锁住处于指定状态的订单，返回锁住的订单id，需要在事务中调用
+     * @param ids
+     * @param status
+     * @return
+     */
+    List<Long> lockIdsByStatus(@Param("ids") List<Long> ids, @Param("status") Integer status);
+
+    /**
+     * 批量修改仍处于原状态的订单的状态
+     * @param ids
+     * @param fromStatus 只修改处于这个状态的订单
+     * @param toStatus
+     * @return 实际修改的订单数
+     */
+    int updateStatusByIds(@Param("ids") List<Long> ids, @Param("fromStatus") Integer fromStatus,
+                          @Param("toStatus") Integer toStatus);
+
+    /**
+     * 批量取消仍处于指定状态的订单，已被其他操作改变状态（如刚支付成功）的订单不受影响
+     * @param ids
+     * @param status 只取消处于这个状态的订单
+     * @param cancelReason
+     * @param cancelTime
+     * @return 实际取消的订单数
+     */
+    int cancelByIds(@Param("ids") List<Long> ids, @Param("status") Integer status,
+                    @Param("cancelReason") String cancelReason, @Param("cancelTime") LocalDateTime cancelTime);
+
     @Select("select * from orders where id = #{outTradeNo}")
     Orders getByNumberAndUserId(String outTradeNo);
 
     @Select("select * from orders where id = #{id}")
     Orders getById(Long id);
 
+    /**
+     * 按幂等键查询用户已提交的订单
+     * @param userId
+     * @param idempotencyKey
+     * @return
+     */
+    @Select("select * from orders where user_id = #{userId} and idempotency_key = #{idempotencyKey}")
+    Orders getByIdempotencyKey(@Param("userId") Long userId, @Param("idempotencyKey") String idempotencyKey);
+
     Double sumByMap(Map map);
 
     Integer countByMap(Map map);
 
+    /**
+     * 按天分组统计时间段内的营业额，没有订单的日期不会返回
+     * @param begin
+     * @param end
+     * @param status
+     * @return
+     */
+    List<DailyTurnoverDTO> sumByDay(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end, @Param("status") Integer status);
+
+    /**
+     * 按天分组统计时间段内的订单总数和有效订单数，没有订单的日期不会返回
+     * @param begin
+     * @param end
+     * @param validStatus 有效订单的状态
+     * @return
+     */
+    List<DailyOrderCountDTO> countByDay(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end, @Param("validStatus") Integer validStatus);
+
+    /**
+     * 按状态分组统计指定时间之后的订单数，没有订单的状态不会返回
+     * @param begin
+     * @return
+     */
+    List<StatusCountDTO> countByStatus(@Param("begin") LocalDateTime begin);
+
     List<GoodsSalesDTO> getSalesTop10(@Param("begin") LocalDateTime beginTime, @Param("end") LocalDateTime endTime);
 }
@@ -3,6 +3,7 @@ package com.sky.mapper;
 import com.github.pagehelper.Page;
 import com.sky.annotation.AutoFill;
 import com.sky.dto.SetmealPageQueryDTO;
+import com.sky.dto.StatusCountDTO;
 import com.sky.entity.Setmeal;
 import com.sky.enumeration.OperationType;
 import com.sky.vo.DishItemVO;
@@ -88,4 +89,18 @@ public interface SetmealMapper {
     Integer countBymap(Map map);
 
     Integer countByMap(Map map);
+
+    /**
+     * 按状态分组统计套餐数量
+     * @return
+     */
+    @Select("select status, count(id) count from setmeal group by status")
+    List<StatusCountDTO> countByStatus();
+
+    /**
+     * 查询所有套餐的价格目录字段
+     * @return
+     */
+    @Select("select id, name, image, price, status from setmeal")
+    List<Setmeal> listForCatalog();
 }
@@ -1,9 +1,13 @@
 package com.sky.mapper;
 
+import com.sky.dto.DailyCountDTO;
 import com.sky.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Mapper
@@ -13,5 +17,20 @@ public interface UserMapper {
 
     void insert(User user);
 
+    /**
+     * 插入用户，openid已存在时不插入
+     * @param user
+     * @return 插入的行数
+     */
+    int insertIgnore(User user);
+
     Integer countByMap(Map map);
+
+    /**
+     * 按天分组统计时间段内的新增用户数，没有新增用户的日期不会返回
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyCountDTO> countByDay(@Param("begin") LocalDateTime begin, @Param("end") LocalDateTime end);
 }
@@ -0,0 +1,65 @@
+package com.sky.service;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.vo.BusinessDataVO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BusinessStatsService {
+
+    /**
+     * 下单后累加订单所在日期的订单总数
+     * @param orders
+     */
+    void orderSubmitted(Orders orders);
+
+    /**
+     * 订单完成后累加订单所在日期的营业额和有效订单数
+     * @param orders
+     */
+    void orderCompleted(Orders orders);
+
+    /**
+     * 一批订单完成后按日期合并累加营业额和有效订单数，每个日期只写一次
+     * @param ordersList
+     */
+    void ordersCompleted(List<Orders> ordersList);
+
+    /**
+     * 新用户注册后累加注册日期的新增用户数
+     * @param user
+     */
+    void userRegistered(User user);
+
+    /**
+     * 根据订单表和用户表重建日期区间内的汇总数据
+     * @param begin
+     * @param end
+     */
+    void rebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 校验日期区间后在后台线程中重建汇总数据
+     * @param begin
+     * @param end
+     */
+    void submitRebuild(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询日期区间内每天的汇总数据，没有数据的日期补0
+     * @param begin
+     * @param end
+     * @return
+     */
+    List<DailyBusinessStats> list(LocalDate begin, LocalDate end);
+
+    /**
+     * 把若干天的汇总数据合计为营业数据
+     * @param statsList
+     * @return
+     */
+    BusinessDataVO summarize(List<DailyBusinessStats> statsList);
+}
@@ -0,0 +1,38 @@
+package com.sky.service;
+
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+
+public interface CatalogStatsService {
+
+    /**
+     * 菜品新增、修改状态或删除后调整计数，新增时旧状态为null，删除时新状态为null
+     * @param oldStatus
+     * @param newStatus
+     */
+    void dishStatusChanged(Integer oldStatus, Integer newStatus);
+
+    /**
+     * 套餐新增、修改状态或删除后调整计数，新增时旧状态为null，删除时新状态为null
+     * @param oldStatus
+     * @param newStatus
+     */
+    void setmealStatusChanged(Integer oldStatus, Integer newStatus);
+
+    /**
+     * 查询菜品总览
+     * @return
+     */
+    DishOverViewVO getDishOverView();
+
+    /**
+     * 查询套餐总览
+     * @return
+     */
+    SetmealOverViewVO getSetmealOverView();
+
+    /**
+     * 按数据库重新统计起售和停售数量，校正计数偏差
+     */
+    void resync();
+}
@@ -23,4 +23,11 @@ public interface DishService {
     List<DishVO> listWithFlavor(Dish dish);
 
     List<Dish> list(Long categoryId);
+
+    /**
+     * 菜品起售停售
+     * @param status
+     * @param id
+     */
+    void startOrStop(Integer status, Long id);
 }
@@ -0,0 +1,16 @@
+package com.sky.service;
+
+public interface IdGeneratorService {
+
+    /**
+     * 生成全局唯一且单调递增的id
+     * @return
+     */
+    long nextId();
+
+    /**
+     * 生成订单号
+     * @return
+     */
+    String nextOrderNumber();
+}
@@ -0,0 +1,43 @@
+package com.sky.service;
+
+import com.sky.vo.JobStatusVO;
+
+import java.util.List;
+
+public interface JobCoordinatorService {
+
+    /**
+     * 获得任务锁后执行任务，其他节点持有锁时跳过，保证同一轮任务在集群中只执行一次
+     * @param jobName
+     * @param job
+     * @return 是否执行了任务
+     */
+    boolean runExclusive(String jobName, Runnable job);
+
+    /**
+     * 同上，执行频率高于默认锁保持时间的任务指定自己的锁保持时间
+     * @param jobName
+     * @param lockAtLeastMillis 任务执行完后锁至少保持的时间
+     * @param job
+     * @return 是否执行了任务
+     */
+    boolean runExclusive(String jobName, long lockAtLeastMillis, Runnable job);
+
+    /**
+     * 在任务每批写入的事务中调用，锁已失效或已有更新令牌的持有者写入过时抛出JobLeaseLostException，
+     * 本批写入随事务回滚，任务停止执行；不在runExclusive执行的任务中调用时不做任何事
+     */
+    void fence();
+
+    /**
+     * 集群中各任务的当前持有者和最近一次执行情况
+     * @return
+     */
+    List<JobStatusVO> listJobStatus();
+
+    /**
+     * 本节点标识
+     * @return
+     */
+    String getNodeId();
+}
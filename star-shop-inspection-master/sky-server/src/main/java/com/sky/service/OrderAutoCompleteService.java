@@ -0,0 +1,20 @@
+package com.sky.service;
+
+import com.sky.vo.OrderJobRunVO;
+
+import java.util.List;
+
+public interface OrderAutoCompleteService {
+
+    /**
+     * 分批把超时仍在派送中的订单改为已完成
+     * @return 本次执行记录
+     */
+    OrderJobRunVO run();
+
+    /**
+     * 最近几次的执行记录，最新的在前
+     * @return
+     */
+    List<OrderJobRunVO> listRecentRuns();
+}
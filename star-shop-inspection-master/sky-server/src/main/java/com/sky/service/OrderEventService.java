@@ -0,0 +1,27 @@
+package com.sky.service;
+
+public interface OrderEventService {
+
+    /**
+     * 写入订单事件，在事务中调用时和订单修改一起提交，提交后立即安排分发
+     * @param orderId
+     * @param type
+     * @param payload 推送的消息内容
+     */
+    void publish(Long orderId, Integer type, String payload);
+
+    /**
+     * 在分发线程池中分发待分发的事件，线程池已满时直接返回，由定时任务补发
+     */
+    void dispatchAsync();
+
+    /**
+     * 领取并分发待分发的事件，直到没有可领取的事件
+     */
+    void dispatch();
+
+    /**
+     * 删除超过保留天数的已分发事件
+     */
+    void cleanDispatched();
+}
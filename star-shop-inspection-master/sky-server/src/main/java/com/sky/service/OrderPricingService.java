@@ -0,0 +1,18 @@
+package com.sky.service;
+
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+
+import java.util.List;
+
+public interface OrderPricingService {
+
+    /**
+     * 按当前价格目录为购物车定价，生成订单明细并校验客户端提交的总金额
+     * @param orders 其中的amount和packAmount为客户端提交的金额，不会被修改
+     * @param shoppingCartList
+     * @return 订单明细，未设置id和订单id
+     */
+    List<OrderDetail> price(Orders orders, List<ShoppingCart> shoppingCartList);
+}
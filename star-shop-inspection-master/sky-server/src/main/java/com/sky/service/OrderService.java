@@ -6,7 +6,13 @@ import com.sky.vo.OrderVO;
 
 public interface OrderService {
 
-    OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO);
+    /**
+     * 用户下单
+     * @param ordersSubmitDTO
+     * @param idempotencyKey 客户端生成的幂等键，重试时使用同一个值，可以为空
+     * @return
+     */
+    OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO, String idempotencyKey);
 
     void paySuccess(String outTradeNo);
 
@@ -0,0 +1,33 @@
+package com.sky.service;
+
+import com.sky.entity.Orders;
+
+import java.util.List;
+
+public interface OrderTimeoutService {
+
+    /**
+     * 登记待支付订单的超时时间，在事务中调用时提交后才登记
+     * @param orders
+     */
+    void schedule(Orders orders);
+
+    /**
+     * 取消已到期的待支付订单
+     * @return 实际取消的订单数
+     */
+    int cancelExpired();
+
+    /**
+     * 按数据库全量检查超时未支付的订单，按id分页，每批取消固定数量
+     * @return 实际取消的订单数
+     */
+    int cancelOverdue();
+
+    /**
+     * 批量取消仍未支付的订单
+     * @param ids
+     * @return 实际取消的订单数
+     */
+    int cancel(List<Long> ids);
+}
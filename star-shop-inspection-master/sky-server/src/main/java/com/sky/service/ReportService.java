@@ -1,6 +1,7 @@
 package com.sky.service;
 
 import com.sky.vo.OrderReportVO;
+import com.sky.vo.ReportExportJobVO;
 import com.sky.vo.SalesTop10ReportVO;
 import com.sky.vo.TurnoverReportVO;
 import com.sky.vo.UserReportVO;
@@ -17,5 +18,38 @@ public interface ReportService {
 
     SalesTop10ReportVO getSalesTop10(LocalDate begin, LocalDate end);
 
-    void exportBusinessData(HttpServletResponse response);
+    /**
+     * 导出时间段内的运营数据报表
+     * @param begin
+     * @param end
+     * @param response
+     */
+    void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response);
+
+    /**
+     * 提交异步导出任务，相同日期区间且数据未变化时直接复用已导出的文件
+     * @param begin
+     * @param end
+     * @return
+     */
+    ReportExportJobVO submitExportJob(LocalDate begin, LocalDate end);
+
+    /**
+     * 查询导出任务
+     * @param jobId
+     * @return
+     */
+    ReportExportJobVO getExportJob(String jobId);
+
+    /**
+     * 下载已完成的导出任务文件
+     * @param jobId
+     * @param response
+     */
+    void downloadExportJob(String jobId, HttpServletResponse response);
+
+    /**
+     * 清理共享目录中过期的导出文件，任务记录在redis中按过期时间自动删除
+     */
+    void cleanExpiredExportJobs();
 }
@@ -9,7 +9,32 @@ public interface ShoppingCartService {
 
     void addShoppingCart(ShoppingCartDTO shoppingCartDTO);
 
+    /**
+     * 购物车中的商品数量减一，减到0时删除该商品
+     * @param shoppingCartDTO
+     */
+    void subShoppingCart(ShoppingCartDTO shoppingCartDTO);
+
     List<ShoppingCart> list(Long currentId);
 
     void clean();
+
+    /**
+     * 清空指定用户的购物车，在事务中调用时等事务提交后再清空
+     * @param userId
+     */
+    void clean(Long userId);
+
+    /**
+     * 从购物车中扣除已下单的商品，下单后再加入购物车的商品保留，在事务中调用时等事务提交后再扣除
+     * @param userId
+     * @param shoppingCartList 下单时读到的购物车
+     */
+    void deduct(Long userId, List<ShoppingCart> shoppingCartList);
+
+    /**
+     * 把有改动的购物车写回数据库
+     * @return 写回的用户数
+     */
+    int flush();
 }
@@ -3,6 +3,14 @@ package com.sky.service;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface UserService {
-    User login(UserLoginDTO user);
+
+    /**
+     * 微信登录，调用微信接口在单独的线程池中执行，不占用请求线程
+     * @param user
+     * @return 只包含用户id和openid，其余字段需要时另行查询
+     */
+    CompletableFuture<User> login(UserLoginDTO user);
 }
@@ -22,6 +22,11 @@ public interface WorkspaceService {
      */
     OrderOverViewVO getOrderOverView();
 
+    /**
+     * 订单状态发生变化，使订单概览缓存失效，在事务中调用时提交后才生效
+     */
+    void invalidateOrderOverView();
+
     /**
      * 查询菜品总览
      * @return
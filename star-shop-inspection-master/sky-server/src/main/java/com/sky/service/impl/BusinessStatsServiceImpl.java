@@ -0,0 +1,237 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.dto.DailyCountDTO;
+import com.sky.dto.DailyOrderCountDTO;
+import com.sky.dto.DailyTurnoverDTO;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.entity.User;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.DailyBusinessStatsMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.JobCoordinatorService;
+import com.sky.utils.DateRangeUtil;
+import com.sky.vo.BusinessDataVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 每日营业数据汇总
+ * 订单和用户变化时增量累加，定时任务和重建接口按原始数据覆盖校正
+ */
+@Service
+@Slf4j
+public class BusinessStatsServiceImpl implements BusinessStatsService {
+
+    //重建时每批处理的天数
+    private static final int REBUILD_BATCH_DAYS = 31;
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private ReportProperties reportProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor reportExportExecutor;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+
+    @Override
+    public void orderSubmitted(Orders orders) {
+        DailyBusinessStats delta = emptyStats(orders.getOrderTime().toLocalDate());
+        delta.setOrderCount(1);
+        dailyBusinessStatsMapper.increment(delta);
+    }
+
+    @Override
+    public void orderCompleted(Orders orders) {
+        DailyBusinessStats delta = emptyStats(orders.getOrderTime().toLocalDate());
+        delta.setValidOrderCount(1);
+        delta.setTurnover(orders.getAmount());
+        dailyBusinessStatsMapper.increment(delta);
+    }
+
+    @Override
+    public void ordersCompleted(List<Orders> ordersList) {
+        //按日期顺序加锁，和重建时的加锁顺序一致
+        Map<LocalDate, DailyBusinessStats> deltaMap = new TreeMap<>();
+        for (Orders orders : ordersList) {
+            DailyBusinessStats delta = deltaMap.computeIfAbsent(orders.getOrderTime().toLocalDate(), this::emptyStats);
+            delta.setValidOrderCount(delta.getValidOrderCount() + 1);
+            if (orders.getAmount() != null) {
+                delta.setTurnover(delta.getTurnover().add(orders.getAmount()));
+            }
+        }
+        deltaMap.values().forEach(dailyBusinessStatsMapper::increment);
+    }
+
+    @Override
+    public void userRegistered(User user) {
+        DailyBusinessStats delta = emptyStats(user.getCreateTime().toLocalDate());
+        delta.setNewUsers(1);
+        dailyBusinessStatsMapper.increment(delta);
+    }
+
+    @Override
+    public void rebuild(LocalDate begin, LocalDate end) {
+        log.info("重建每日营业数据：{} 至 {}", begin, end);
+        LocalDate batchBegin = begin;
+        while (!batchBegin.isAfter(end)) {
+            LocalDate batchEnd = batchBegin.plusDays(REBUILD_BATCH_DAYS - 1);
+            if (batchEnd.isAfter(end)) {
+                batchEnd = end;
+            }
+            rebuildBatch(batchBegin, batchEnd);
+            batchBegin = batchEnd.plusDays(1);
+        }
+    }
+
+    @Override
+    public void submitRebuild(LocalDate begin, LocalDate end) {
+        DateRangeUtil.check(begin, end, reportProperties.getRebuildMaxDays());
+        try {
+            //和报表导出共用有界线程池，重建区间较长时不占用请求线程
+            reportExportExecutor.execute(() -> {
+                try {
+                    rebuild(begin, end);
+                } catch (Exception e) {
+                    log.error("重建每日营业数据失败：{} 至 {}", begin, end, e);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            throw new ReportBusinessException(MessageConstant.STATS_REBUILD_BUSY);
+        }
+    }
+
+    @Override
+    public List<DailyBusinessStats> list(LocalDate begin, LocalDate end) {
+        Map<LocalDate, DailyBusinessStats> statsMap = new HashMap<>();
+        for (DailyBusinessStats stats : dailyBusinessStatsMapper.listByDate(begin, end)) {
+            statsMap.put(stats.getStatDate(), stats);
+        }
+
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyBusinessStats stats = statsMap.get(date);
+            statsList.add(stats == null ? emptyStats(date) : stats);
+        }
+        return statsList;
+    }
+
+    @Override
+    public BusinessDataVO summarize(List<DailyBusinessStats> statsList) {
+        /**
+         * 营业额：已完成订单的总金额
+         * 有效订单：已完成订单的数量
+         * 订单完成率：有效订单数 / 总订单数
+         * 平均客单价：营业额 / 有效订单数
+         * 新增用户：新增用户的数量
+         */
+        BigDecimal turnoverAmount = BigDecimal.ZERO;
+        int totalOrderCount = 0;
+        int validOrderCount = 0;
+        int newUsers = 0;
+        for (DailyBusinessStats stats : statsList) {
+            turnoverAmount = turnoverAmount.add(stats.getTurnover());
+            totalOrderCount += stats.getOrderCount();
+            validOrderCount += stats.getValidOrderCount();
+            newUsers += stats.getNewUsers();
+        }
+        //营业额
+        Double turnover = turnoverAmount.doubleValue();
+
+        Double unitPrice = 0.0;
+
+        Double orderCompletionRate = 0.0;
+        if(totalOrderCount != 0 && validOrderCount != 0){
+            //订单完成率
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
+            //平均客单价
+            unitPrice = turnover / validOrderCount;
+        }
+
+        return BusinessDataVO.builder()
+                .turnover(turnover)
+                .validOrderCount(validOrderCount)
+                .orderCompletionRate(orderCompletionRate)
+                .unitPrice(unitPrice)
+                .newUsers(newUsers)
+                .build();
+    }
+
+    /**
+     * 用三次分组查询统计一批日期的数据，没有数据的日期也写入0，覆盖掉之前的错误数据
+     * 统计前先在同一个事务中锁定这批日期的汇总行，统计期间提交的累加会等到覆盖写入之后再执行，不会被覆盖丢失
+     * @param begin
+     * @param end
+     */
+    private void rebuildBatch(LocalDate begin, LocalDate end) {
+        LocalDateTime beginTime = LocalDateTime.of(begin, LocalTime.MIN);
+        LocalDateTime endTime = LocalDateTime.of(end, LocalTime.MAX);
+
+        Map<LocalDate, DailyBusinessStats> statsMap = new HashMap<>();
+        List<DailyBusinessStats> statsList = new ArrayList<>();
+        for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+            DailyBusinessStats stats = emptyStats(date);
+            statsMap.put(date, stats);
+            statsList.add(stats);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            //定时校正时锁已被其他节点接手则回滚本批并停止，手动重建时不做检查
+            jobCoordinatorService.fence();
+            //加锁必须在事务中的第一次普通查询之前，之后的查询才能读到等锁期间已提交的数据
+            dailyBusinessStatsMapper.lockBatch(statsList);
+            recompute(statsMap, beginTime, endTime);
+            dailyBusinessStatsMapper.upsertBatch(statsList);
+        });
+    }
+
+    private void recompute(Map<LocalDate, DailyBusinessStats> statsMap, LocalDateTime beginTime, LocalDateTime endTime) {
+        for (DailyTurnoverDTO dailyTurnover : orderMapper.sumByDay(beginTime, endTime, Orders.COMPLETED)) {
+            statsMap.get(dailyTurnover.getDate()).setTurnover(BigDecimal.valueOf(dailyTurnover.getTurnover()));
+        }
+        for (DailyOrderCountDTO dailyOrderCount : orderMapper.countByDay(beginTime, endTime, Orders.COMPLETED)) {
+            DailyBusinessStats stats = statsMap.get(dailyOrderCount.getDate());
+            stats.setOrderCount(dailyOrderCount.getOrderCount());
+            stats.setValidOrderCount(dailyOrderCount.getValidOrderCount());
+        }
+        for (DailyCountDTO dailyNewUser : userMapper.countByDay(beginTime, endTime)) {
+            statsMap.get(dailyNewUser.getDate()).setNewUsers(dailyNewUser.getCount());
+        }
+    }
+
+    private DailyBusinessStats emptyStats(LocalDate date) {
+        return DailyBusinessStats.builder()
+                .statDate(date)
+                .turnover(BigDecimal.ZERO)
+                .orderCount(0)
+                .validOrderCount(0)
+                .newUsers(0)
+                .updateTime(LocalDateTime.now())
+                .build();
+    }
+}
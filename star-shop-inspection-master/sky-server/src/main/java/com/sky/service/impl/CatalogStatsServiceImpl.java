@@ -0,0 +1,211 @@
+package com.sky.service.impl;
+
+import com.sky.constant.StatusConstant;
+import com.sky.dto.StatusCountDTO;
+import com.sky.mapper.DishMapper;
+import com.sky.mapper.SetmealMapper;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.CatalogStatsProperties;
+import com.sky.service.CatalogStatsService;
+import com.sky.vo.DishOverViewVO;
+import com.sky.vo.SetmealOverViewVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 菜品和套餐的起售、停售计数
+ * 改动提交后本节点直接调整计数，同时在计数频道上把变化发给其他节点，其他节点收到后做同样的调整。
+ * 通知丢失或与校正查询交错造成的偏差，最多等到定时校正（10分钟）后恢复准确
+ */
+@Service
+@Slf4j
+public class CatalogStatsServiceImpl implements CatalogStatsService, MessageListener {
+
+    @Autowired
+    private DishMapper dishMapper;
+    @Autowired
+    private SetmealMapper setmealMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Autowired
+    private CatalogStatsProperties catalogStatsProperties;
+
+    private static final String DISH = "dish";
+    private static final String SETMEAL = "setmeal";
+
+    //本节点标识，收到自己发出的通知时忽略
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final StatusCounter dishCounter = new StatusCounter();
+
+    private final StatusCounter setmealCounter = new StatusCounter();
+
+    //首次读取前从数据库加载计数
+    private volatile boolean loaded;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(catalogStatsProperties.getChannel()));
+    }
+
+    /**
+     * 收到其他节点的计数变化
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject json = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (nodeId.equals(json.getString("nodeId"))) {
+            return;
+        }
+        StatusCounter counter = DISH.equals(json.getString("type")) ? dishCounter : setmealCounter;
+        counter.change(json.getInteger("oldStatus"), json.getInteger("newStatus"));
+    }
+
+    @Override
+    public void dishStatusChanged(Integer oldStatus, Integer newStatus) {
+        afterCommit(() -> {
+            dishCounter.change(oldStatus, newStatus);
+            publish(DISH, oldStatus, newStatus);
+        });
+    }
+
+    @Override
+    public void setmealStatusChanged(Integer oldStatus, Integer newStatus) {
+        afterCommit(() -> {
+            setmealCounter.change(oldStatus, newStatus);
+            publish(SETMEAL, oldStatus, newStatus);
+        });
+    }
+
+    private void publish(String type, Integer oldStatus, Integer newStatus) {
+        if (oldStatus != null && oldStatus.equals(newStatus)) {
+            return;
+        }
+        JSONObject message = new JSONObject();
+        message.put("nodeId", nodeId);
+        message.put("type", type);
+        message.put("oldStatus", oldStatus);
+        message.put("newStatus", newStatus);
+        try {
+            stringRedisTemplate.convertAndSend(catalogStatsProperties.getChannel(), message.toJSONString());
+        } catch (Exception e) {
+            //通知失败时其他节点的计数在定时校正后恢复准确
+            log.warn("发送菜品和套餐计数变化通知失败：{}", message, e);
+        }
+    }
+
+    @Override
+    public DishOverViewVO getDishOverView() {
+        ensureLoaded();
+        return DishOverViewVO.builder()
+                .sold(dishCounter.enabled.get())
+                .discontinued(dishCounter.disabled.get())
+                .build();
+    }
+
+    @Override
+    public SetmealOverViewVO getSetmealOverView() {
+        ensureLoaded();
+        return SetmealOverViewVO.builder()
+                .sold(setmealCounter.enabled.get())
+                .discontinued(setmealCounter.disabled.get())
+                .build();
+    }
+
+    @Override
+    public synchronized void resync() {
+        dishCounter.reset(dishMapper.countByStatus());
+        setmealCounter.reset(setmealMapper.countByStatus());
+        loaded = true;
+        log.info("菜品和套餐计数已校正，菜品：{}，套餐：{}", dishCounter, setmealCounter);
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    resync();
+                }
+            }
+        }
+    }
+
+    /**
+     * 在事务中调用时等事务提交后再调整计数，避免回滚的修改被计入
+     * @param action
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * 起售和停售数量
+     */
+    private static class StatusCounter {
+        private final AtomicInteger enabled = new AtomicInteger();
+        private final AtomicInteger disabled = new AtomicInteger();
+
+        private void change(Integer oldStatus, Integer newStatus) {
+            if (oldStatus != null && oldStatus.equals(newStatus)) {
+                return;
+            }
+            add(oldStatus, -1);
+            add(newStatus, 1);
+        }
+
+        private void add(Integer status, int delta) {
+            if (StatusConstant.ENABLE.equals(status)) {
+                enabled.addAndGet(delta);
+            } else if (StatusConstant.DISABLE.equals(status)) {
+                disabled.addAndGet(delta);
+            }
+        }
+
+        private void reset(List<StatusCountDTO> statusCountList) {
+            int enabledCount = 0;
+            int disabledCount = 0;
+            for (StatusCountDTO statusCount : statusCountList) {
+                if (StatusConstant.ENABLE.equals(statusCount.getStatus())) {
+                    enabledCount = statusCount.getCount();
+                } else if (StatusConstant.DISABLE.equals(statusCount.getStatus())) {
+                    disabledCount = statusCount.getCount();
+                }
+            }
+            enabled.set(enabledCount);
+            disabled.set(disabledCount);
+        }
+
+        @Override
+        public String toString() {
+            return "起售" + enabled.get() + "，停售" + disabled.get();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogSnapshotHolder;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.DishDTO;
@@ -9,10 +10,12 @@ import com.sky.dto.DishPageQueryDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.DishFlavor;
 import com.sky.exception.DeletionNotAllowedException;
+import com.sky.exception.DishBusinessException;
 import com.sky.mapper.DishFlavorMapper;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.result.PageResult;
+import com.sky.service.CatalogStatsService;
 import com.sky.service.DishService;
 import com.sky.vo.DishVO;
 import org.springframework.beans.BeanUtils;
@@ -22,6 +25,8 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 public class DishServiceImpl implements DishService {
@@ -32,6 +37,10 @@ public class DishServiceImpl implements DishService {
     private DishFlavorMapper dishFlavorMapper;
     @Resource
     private SetmealDishMapper setmealDishMapper;
+    @Resource
+    private CatalogStatsService catalogStatsService;
+    @Resource
+    private CatalogSnapshotHolder catalogSnapshotHolder;
 
     @Override
     @Transactional
@@ -51,7 +60,8 @@ public class DishServiceImpl implements DishService {
             });
             dishFlavorMapper.saveBatch(flavors);
         }
-
+        catalogStatsService.dishStatusChanged(null, dish.getStatus());
+        catalogSnapshotHolder.changed();
     }
 
     /**
@@ -77,10 +87,13 @@ public class DishServiceImpl implements DishService {
     @Transactional
     public void deleteBatch(List<Long> ids) {
         // 判断菜品是否在售
+        List<Integer> statusList = new ArrayList<>();
         for (Long id : ids) {
-            if (dishMapper.getById(id).getStatus() == StatusConstant.ENABLE) {
+            Integer status = dishMapper.getById(id).getStatus();
+            if (status == StatusConstant.ENABLE) {
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
             }
+            statusList.add(status);
         }
         // 判断菜品是否属于套餐
 
@@ -93,6 +106,8 @@ public class DishServiceImpl implements DishService {
         for (Long id : ids) {
             dishFlavorMapper.deleteByDishId(id);
         }
+        statusList.forEach(status -> catalogStatsService.dishStatusChanged(status, null));
+        catalogSnapshotHolder.changed();
 
     }
 
@@ -109,7 +124,12 @@ public class DishServiceImpl implements DishService {
     public void updateWithFlavor(DishDTO dishDTO) {
         Dish dish = new Dish();
         BeanUtils.copyProperties(dishDTO, dish);
+        Integer oldStatus = dish.getStatus() == null ? null : dishMapper.getById(dish.getId()).getStatus();
         dishMapper.updateDish(dish);
+        if (dish.getStatus() != null) {
+            catalogStatsService.dishStatusChanged(oldStatus, dish.getStatus());
+        }
+        catalogSnapshotHolder.changed();
         // 删除口味
         dishFlavorMapper.deleteByDishId(dishDTO.getId());
         // 添加口味
@@ -127,15 +147,19 @@ public class DishServiceImpl implements DishService {
         List<Dish> dishList = dishMapper.list(dish);
 
         List<DishVO> dishVOList = new ArrayList<>();
+        if (dishList.isEmpty()) {
+            return dishVOList;
+        }
+
+        //一次查询所有菜品的口味，再按菜品id分组
+        List<Long> dishIds = dishList.stream().map(Dish::getId).collect(Collectors.toList());
+        Map<Long, List<DishFlavor>> flavorMap = dishFlavorMapper.getByDishIds(dishIds).stream()
+                .collect(Collectors.groupingBy(DishFlavor::getDishId));
 
         for (Dish d : dishList) {
             DishVO dishVO = new DishVO();
             BeanUtils.copyProperties(d,dishVO);
-
-            //根据菜品id查询对应的口味
-            List<DishFlavor> flavors = dishFlavorMapper.getByDishId(d.getId());
-
-            dishVO.setFlavors(flavors);
+            dishVO.setFlavors(flavorMap.getOrDefault(d.getId(), new ArrayList<>()));
             dishVOList.add(dishVO);
         }
 
@@ -151,4 +175,26 @@ public class DishServiceImpl implements DishService {
 
         return dishMapper.list(dish);
     }
+
+    /**
+     * 菜品起售停售
+     * @param status
+     * @param id
+     */
+    @Override
+    @Transactional
+    public void startOrStop(Integer status, Long id) {
+        Dish dishDB = dishMapper.getById(id);
+        if (dishDB == null) {
+            throw new DishBusinessException(MessageConstant.DISH_NOT_FOUND);
+        }
+        Integer oldStatus = dishDB.getStatus();
+        Dish dish = Dish.builder()
+                .id(id)
+                .status(status)
+                .build();
+        dishMapper.updateDish(dish);
+        catalogStatsService.dishStatusChanged(oldStatus, status);
+        catalogSnapshotHolder.changed();
+    }
 }
@@ -0,0 +1,147 @@
+package com.sky.service.impl;
+
+import com.sky.properties.IdProperties;
+import com.sky.service.IdGeneratorService;
+import com.sky.utils.SnowflakeIdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 雪花算法id生成
+ * 没有配置节点号时从redis领取一个空闲的节点号，运行期间定时续期，保证各节点的节点号不重复
+ * 租约失效（续期失败到期或节点号被其他节点领取）后停止生成id，重新领取到空闲节点号后恢复
+ */
+@Service
+@Slf4j
+public class IdGeneratorServiceImpl implements IdGeneratorService {
+
+    private static final String WORKER_KEY = "sky:id:worker:";
+
+    //节点号仍由本节点持有时续期
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) end " +
+            "return 0", Long.class);
+
+    //节点号仍由本节点持有时释放
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private IdProperties idProperties;
+
+    //同一台机器上重启的进程也要区分开
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "#" + UUID.randomUUID();
+
+    private volatile SnowflakeIdGenerator generator;
+    private ScheduledExecutorService renewExecutor;
+
+    //节点号租约在本地的有效期，按发起续期的时间计算，不晚于redis中的过期时间，为0表示没有持有节点号
+    private volatile long leaseValidUntil;
+
+    @PostConstruct
+    public void init() {
+        int workerId = idProperties.getWorkerId();
+        if (workerId < 0) {
+            long begin = System.currentTimeMillis();
+            workerId = acquireWorkerId();
+            leaseValidUntil = begin + TimeUnit.SECONDS.toMillis(idProperties.getWorkerLeaseSeconds());
+            renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "id-worker-renew");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(idProperties.getWorkerLeaseSeconds() / 3, 1);
+            renewExecutor.scheduleAtFixedRate(this::renew, period, period, TimeUnit.SECONDS);
+        }
+        generator = new SnowflakeIdGenerator(workerId);
+        log.info("id生成节点号：{}", workerId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (renewExecutor == null) {
+            return;
+        }
+        renewExecutor.shutdownNow();
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(WORKER_KEY + generator.getWorkerId()), owner);
+        } catch (Exception e) {
+            log.warn("释放id生成节点号失败，租期到后自动释放", e);
+        }
+    }
+
+    public long nextId() {
+        return currentGenerator().nextId();
+    }
+
+    public String nextOrderNumber() {
+        return String.valueOf(currentGenerator().nextId());
+    }
+
+    private SnowflakeIdGenerator currentGenerator() {
+        if (renewExecutor != null && System.currentTimeMillis() >= leaseValidUntil) {
+            // 节点号可能已被其他节点使用，继续生成会产生重复的主键和订单号
+            throw new IllegalStateException("id生成节点号租约已失效，暂停生成id");
+        }
+        return generator;
+    }
+
+    /**
+     * 依次尝试领取空闲的节点号
+     */
+    private int acquireWorkerId() {
+        for (int workerId = 0; workerId <= SnowflakeIdGenerator.MAX_WORKER_ID; workerId++) {
+            Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(WORKER_KEY + workerId, owner,
+                    idProperties.getWorkerLeaseSeconds(), TimeUnit.SECONDS);
+            if (Boolean.TRUE.equals(acquired)) {
+                return workerId;
+            }
+        }
+        throw new IllegalStateException("没有空闲的id生成节点号，请检查节点数量或配置sky.id.worker-id");
+    }
+
+    private void renew() {
+        long begin = System.currentTimeMillis();
+        long leaseMillis = TimeUnit.SECONDS.toMillis(idProperties.getWorkerLeaseSeconds());
+        try {
+            if (leaseValidUntil > 0) {
+                String key = WORKER_KEY + generator.getWorkerId();
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(key),
+                        owner, String.valueOf(idProperties.getWorkerLeaseSeconds()));
+                if ((renewed != null && renewed != 0)
+                        || Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(key, owner,
+                        idProperties.getWorkerLeaseSeconds(), TimeUnit.SECONDS))) {
+                    leaseValidUntil = begin + leaseMillis;
+                    return;
+                }
+                // 租期内没能续期且节点号已被其他节点领取
+                leaseValidUntil = 0;
+                log.error("id生成节点号{}已被其他节点领取，暂停生成id，重新领取节点号", key);
+            }
+            // 先换成新节点号的生成器，再恢复租约
+            int workerId = acquireWorkerId();
+            generator = new SnowflakeIdGenerator(workerId);
+            leaseValidUntil = begin + leaseMillis;
+            log.info("重新领取id生成节点号：{}", workerId);
+        } catch (Exception e) {
+            // 续期失败时在本地有效期内继续生成id，到期后暂停
+            log.warn("id生成节点号续期失败", e);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.sky.service.impl;
+
+import com.sky.exception.JobLeaseLostException;
+import com.sky.mapper.JobFenceMapper;
+import com.sky.properties.JobProperties;
+import com.sky.service.JobCoordinatorService;
+import com.sky.vo.JobStatusVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于redis租约的集群任务锁
+ * 获得锁时先自增任务的令牌，锁的值为“节点标识#令牌”，续期和释放都先比较值，过期后被别的节点拿走的锁不会被误续或误删
+ * 续期失败或租期已过时把租约标记为失效，任务在下一批写入前停止；
+ * 每批写入事务还会把令牌写入数据库中的栅栏行，新持有者写入后旧持有者的写入会被拒绝并回滚
+ */
+@Service
+@Slf4j
+public class JobCoordinatorServiceImpl implements JobCoordinatorService {
+
+    private static final String LOCK_KEY = "sky:job:lock:";
+    private static final String TOKEN_KEY = "sky:job:token:";
+    private static final String STATUS_KEY = "sky:job:status:";
+    private static final String NAMES_KEY = "sky:job:names";
+
+    //锁的值没变时续期
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('pexpire', KEYS[1], ARGV[2]) end " +
+            "return 0", Long.class);
+
+    //锁的值没变时释放，还需要保持的锁只缩短有效期
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "  if tonumber(ARGV[2]) > 0 then return redis.call('pexpire', KEYS[1], ARGV[2]) end " +
+            "  return redis.call('del', KEYS[1]) " +
+            "end " +
+            "return 0", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private JobProperties jobProperties;
+    @Autowired
+    private JobFenceMapper jobFenceMapper;
+
+    //当前线程正在执行的任务的租约
+    private static final ThreadLocal<JobLease> CURRENT_LEASE = new ThreadLocal<>();
+
+    //进程号@主机名，便于在监控中认出是哪个节点
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName();
+
+    //本节点各任务因其他节点持有锁而跳过的次数
+    private final Map<String, AtomicLong> skipped = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService renewExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "job-lock-renew");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        renewExecutor.shutdownNow();
+    }
+
+    public boolean runExclusive(String jobName, Runnable job) {
+        return runExclusive(jobName, TimeUnit.SECONDS.toMillis(jobProperties.getLockAtLeastSeconds()), job);
+    }
+
+    public boolean runExclusive(String jobName, long lockAtLeastMillis, Runnable job) {
+        AtomicLong skippedCount = skipped.computeIfAbsent(jobName, k -> new AtomicLong());
+        String lockKey = LOCK_KEY + jobName;
+        long leaseMillis = TimeUnit.SECONDS.toMillis(jobProperties.getLeaseSeconds());
+
+        Long token = stringRedisTemplate.opsForValue().increment(TOKEN_KEY + jobName);
+        String lockValue = nodeId + "#" + token;
+        Boolean locked = stringRedisTemplate.opsForValue().setIfAbsent(lockKey, lockValue, leaseMillis, TimeUnit.MILLISECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            skippedCount.incrementAndGet();
+            log.debug("任务{}正在其他节点执行，跳过", jobName);
+            return false;
+        }
+
+        JobLease lease = new JobLease(jobName, token, System.currentTimeMillis() + leaseMillis);
+
+        //执行期间每隔三分之一租期续期一次
+        long renewMillis = Math.max(leaseMillis / 3, 1);
+        ScheduledFuture<?> renewal = renewExecutor.scheduleAtFixedRate(() -> {
+            long renewStart = System.currentTimeMillis();
+            try {
+                Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lockKey),
+                        lockValue, String.valueOf(leaseMillis));
+                if (renewed == null || renewed == 0) {
+                    lease.lost = true;
+                    log.warn("任务{}的锁已失效，令牌{}，停止执行", jobName, token);
+                } else {
+                    lease.expireAt = renewStart + leaseMillis;
+                }
+            } catch (Exception e) {
+                //连不上redis时无法确认锁是否还在，租期过后按失效处理
+                if (System.currentTimeMillis() >= lease.expireAt) {
+                    lease.lost = true;
+                }
+                log.warn("任务{}续期失败", jobName, e);
+            }
+        }, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+
+        LocalDateTime startTime = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        String error = null;
+        CURRENT_LEASE.set(lease);
+        try {
+            job.run();
+        } catch (JobLeaseLostException e) {
+            log.warn("任务{}已停止：{}", jobName, e.getMessage());
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } catch (Exception e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            log.error("任务{}执行失败", jobName, e);
+        } finally {
+            CURRENT_LEASE.remove();
+            renewal.cancel(false);
+            long duration = System.currentTimeMillis() - start;
+            long holdMillis = lockAtLeastMillis - duration;
+            try {
+                Long released = stringRedisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(lockKey),
+                        lockValue, String.valueOf(Math.max(holdMillis, 0)));
+                //锁已被其他节点接手时不覆盖新持有者的执行情况
+                if (released != null && released != 0) {
+                    saveStatus(jobName, token, startTime, duration, error);
+                }
+            } catch (Exception e) {
+                log.warn("释放任务{}的锁失败，租期到后自动释放", jobName, e);
+            }
+        }
+        return true;
+    }
+
+    public void fence() {
+        JobLease lease = CURRENT_LEASE.get();
+        if (lease == null) {
+            return;
+        }
+        if (lease.lost || System.currentTimeMillis() >= lease.expireAt) {
+            lease.lost = true;
+            throw new JobLeaseLostException("任务" + lease.jobName + "的锁已失效，令牌" + lease.token);
+        }
+        if (!lease.fenceInserted) {
+            jobFenceMapper.insertIgnore(lease.jobName);
+            lease.fenceInserted = true;
+        }
+        if (jobFenceMapper.advance(lease.jobName, lease.token) == 0) {
+            lease.lost = true;
+            throw new JobLeaseLostException("任务" + lease.jobName + "已有更新的令牌写入，令牌" + lease.token + "的写入被拒绝");
+        }
+    }
+
+    public List<JobStatusVO> listJobStatus() {
+        List<JobStatusVO> statusList = new ArrayList<>();
+        Set<String> jobNames = stringRedisTemplate.opsForSet().members(NAMES_KEY);
+        if (jobNames == null) {
+            return statusList;
+        }
+        for (String jobName : new TreeSet<>(jobNames)) {
+            AtomicLong skippedCount = skipped.get(jobName);
+            String lockValue = stringRedisTemplate.opsForValue().get(LOCK_KEY + jobName);
+            Map<Object, Object> status = stringRedisTemplate.opsForHash().entries(STATUS_KEY + jobName);
+            statusList.add(JobStatusVO.builder()
+                    .jobName(jobName)
+                    .leader(lockValue == null ? null : lockValue.substring(0, lockValue.lastIndexOf('#')))
+                    .lastRunNode((String) status.get("node"))
+                    .lastFencingToken(status.containsKey("token") ? Long.valueOf((String) status.get("token")) : null)
+                    .lastStartTime(status.containsKey("startTime") ? LocalDateTime.parse((String) status.get("startTime")) : null)
+                    .lastDurationMillis(status.containsKey("durationMillis") ? Long.valueOf((String) status.get("durationMillis")) : null)
+                    .lastSuccess(status.containsKey("success") ? Boolean.valueOf((String) status.get("success")) : null)
+                    .lastError((String) status.get("error"))
+                    .skippedOnThisNode(skippedCount == null ? 0L : skippedCount.get())
+                    .build());
+        }
+        return statusList;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 把执行结果写入redis，任何节点都能查到最近一次执行的情况
+     */
+    private void saveStatus(String jobName, Long token, LocalDateTime startTime, long duration, String error) {
+        Map<String, String> status = new HashMap<>();
+        status.put("node", nodeId);
+        status.put("token", String.valueOf(token));
+        status.put("startTime", startTime.toString());
+        status.put("durationMillis", String.valueOf(duration));
+        status.put("success", String.valueOf(error == null));
+        status.put("error", error == null ? "" : error);
+        stringRedisTemplate.opsForHash().putAll(STATUS_KEY + jobName, status);
+        stringRedisTemplate.opsForSet().add(NAMES_KEY, jobName);
+    }
+
+    /**
+     * 一次任务执行持有的租约
+     */
+    private static class JobLease {
+        private final String jobName;
+        private final Long token;
+        //租约到期时间，续期成功后延后
+        private volatile long expireAt;
+        //续期失败或写入被栅栏拒绝后置为true
+        private volatile boolean lost;
+        //本次执行是否已插入过栅栏行
+        private boolean fenceInserted;
+
+        private JobLease(String jobName, Long token, long expireAt) {
+            this.jobName = jobName;
+            this.token = token;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.OrderJobProperties;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.JobCoordinatorService;
+import com.sky.service.OrderAutoCompleteService;
+import com.sky.service.WorkspaceService;
+import com.sky.vo.OrderJobRunVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.stream.Collectors;
+
+/**
+ * 按id分页处理派送中的订单，每批只查询需要的列并批量修改状态，每批一个事务
+ * 积压的订单再多，内存占用和单个事务的时长也只和每批的数量有关
+ */
+@Service
+@Slf4j
+public class OrderAutoCompleteServiceImpl implements OrderAutoCompleteService {
+
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private BusinessStatsService businessStatsService;
+    @Autowired
+    private WorkspaceService workspaceService;
+    @Autowired
+    private OrderJobProperties orderJobProperties;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+
+    private final Deque<OrderJobRunVO> recentRuns = new ConcurrentLinkedDeque<>();
+
+    public OrderJobRunVO run() {
+        LocalDateTime startTime = LocalDateTime.now();
+        long start = System.nanoTime();
+        LocalDateTime orderTime = startTime.minusMinutes(orderJobProperties.getAutoCompleteAfterMinutes());
+        int chunkSize = orderJobProperties.getAutoCompleteChunkSize();
+
+        int chunks = 0;
+        int scanned = 0;
+        int updated = 0;
+        Long lastId = 0L;
+        while (true) {
+            List<Orders> chunk = orderMapper.listByStatusAfterId(Orders.DELIVERY_IN_PROGRESS, orderTime, lastId, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            chunks++;
+            scanned += chunk.size();
+            updated += transactionTemplate.execute(status -> completeChunk(chunk));
+            lastId = chunk.get(chunk.size() - 1).getId();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        if (updated > 0) {
+            workspaceService.invalidateOrderOverView();
+        }
+
+        OrderJobRunVO run = OrderJobRunVO.builder()
+                .startTime(startTime)
+                .chunks(chunks)
+                .scanned(scanned)
+                .updated(updated)
+                .durationMillis((System.nanoTime() - start) / 1_000_000)
+                .build();
+        recentRuns.addFirst(run);
+        while (recentRuns.size() > orderJobProperties.getRunHistorySize()) {
+            recentRuns.pollLast();
+        }
+        log.info("自动完成派送中订单：{}", run);
+        return run;
+    }
+
+    public List<OrderJobRunVO> listRecentRuns() {
+        return Collections.unmodifiableList(new ArrayList<>(recentRuns));
+    }
+
+    /**
+     * 完成一批订单并累加营业数据
+     * @param chunk
+     * @return 实际完成的订单数
+     */
+    private int completeChunk(List<Orders> chunk) {
+        //锁已被其他节点接手时回滚本批并停止
+        jobCoordinatorService.fence();
+        List<Long> ids = chunk.stream().map(Orders::getId).collect(Collectors.toList());
+        //按主键锁住仍在派送中的订单，查询之后被其他操作改了状态的订单不再处理
+        Set<Long> lockedIds = new HashSet<>(orderMapper.lockIdsByStatus(ids, Orders.DELIVERY_IN_PROGRESS));
+        if (lockedIds.isEmpty()) {
+            return 0;
+        }
+        List<Orders> completed = chunk.stream()
+                .filter(orders -> lockedIds.contains(orders.getId()))
+                .collect(Collectors.toList());
+        int updated = orderMapper.updateStatusByIds(new ArrayList<>(lockedIds),
+                Orders.DELIVERY_IN_PROGRESS, Orders.COMPLETED);
+        businessStatsService.ordersCompleted(completed);
+        return updated;
+    }
+}
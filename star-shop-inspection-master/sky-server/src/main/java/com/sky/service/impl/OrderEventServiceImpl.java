@@ -0,0 +1,114 @@
+package com.sky.service.impl;
+
+import com.sky.entity.OrderEvent;
+import com.sky.mapper.OrderEventMapper;
+import com.sky.properties.OrderEventProperties;
+import com.sky.service.OrderEventService;
+import com.sky.websocket.WebSocketBroadcaster;
+import com.sky.websocket.WebSocketServer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+@Slf4j
+public class OrderEventServiceImpl implements OrderEventService {
+
+    @Autowired
+    private OrderEventMapper orderEventMapper;
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
+    @Autowired
+    private OrderEventProperties orderEventProperties;
+    @Autowired
+    private ThreadPoolTaskExecutor orderEventExecutor;
+
+    //本节点标识，和领取序号拼成每次领取的标识
+    private final String nodeId = UUID.randomUUID().toString().replace("-", "");
+
+    private final AtomicLong claimSequence = new AtomicLong();
+
+    public void publish(Long orderId, Integer type, String payload) {
+        OrderEvent orderEvent = OrderEvent.builder()
+                .orderId(orderId)
+                .type(type)
+                .payload(payload)
+                .status(OrderEvent.PENDING)
+                .createTime(LocalDateTime.now())
+                .build();
+        orderEventMapper.insert(orderEvent);
+
+        //事务提交后事件才对分发线程可见，提交后再安排分发
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatchAsync();
+                }
+            });
+        } else {
+            dispatchAsync();
+        }
+    }
+
+    public void dispatchAsync() {
+        try {
+            orderEventExecutor.execute(this::dispatch);
+        } catch (TaskRejectedException e) {
+            //已经有足够的分发任务在排队，它们会领取到这次的事件
+            log.debug("订单事件分发线程池已满");
+        }
+    }
+
+    public void dispatch() {
+        int batchSize = orderEventProperties.getBatchSize();
+        int maxDispatchCount = orderEventProperties.getMaxDispatchCount();
+        //一直分发失败的事件不再领取，避免反复重试并占用每批的名额
+        int failed = orderEventMapper.markFailed(
+                LocalDateTime.now().minusSeconds(orderEventProperties.getRetryAfterSeconds()), maxDispatchCount);
+        if (failed > 0) {
+            log.error("{}条订单事件分发{}次仍未成功，已标记为分发失败", failed, maxDispatchCount);
+        }
+        while (true) {
+            String dispatcher = nodeId + "-" + claimSequence.incrementAndGet();
+            LocalDateTime now = LocalDateTime.now();
+            int claimed = orderEventMapper.claim(dispatcher, now,
+                    now.minusSeconds(orderEventProperties.getRetryAfterSeconds()), maxDispatchCount, batchSize);
+            if (claimed == 0) {
+                return;
+            }
+
+            List<OrderEvent> events = orderEventMapper.listByDispatcher(dispatcher);
+            try {
+                //目前的事件都是推给管理端的订单提醒
+                webSocketBroadcaster.publishAll(WebSocketServer.TOPIC_ORDER,
+                        events.stream().map(OrderEvent::getPayload).collect(Collectors.toList()));
+            } catch (Exception e) {
+                //事件保持分发中状态，超时后会被重新领取
+                log.warn("分发订单事件失败，{}秒后重试，共{}条", orderEventProperties.getRetryAfterSeconds(), events.size(), e);
+                return;
+            }
+            orderEventMapper.markDispatched(events.stream().map(OrderEvent::getId).collect(Collectors.toList()));
+
+            if (claimed < batchSize) {
+                return;
+            }
+        }
+    }
+
+    public void cleanDispatched() {
+        int deleted = orderEventMapper.deleteDispatchedBefore(
+                LocalDateTime.now().minusDays(orderEventProperties.getRetentionDays()));
+        log.info("删除已分发的订单事件{}条", deleted);
+    }
+}
@@ -0,0 +1,80 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.CatalogSnapshotHolder;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.service.OrderPricingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 订单定价，商品的名称、图片和单价取自同一版本的价格目录，不使用购物车中保存的价格，客户端提交的金额只做校验不做修改
+ */
+@Service
+@Slf4j
+public class OrderPricingServiceImpl implements OrderPricingService {
+
+    @Autowired
+    private CatalogSnapshotHolder catalogSnapshotHolder;
+
+    public List<OrderDetail> price(Orders orders, List<ShoppingCart> shoppingCartList) {
+        CatalogSnapshot catalog = catalogSnapshotHolder.get();
+        List<OrderDetail> orderDetails = new ArrayList<>(shoppingCartList.size());
+        BigDecimal goodsAmount = BigDecimal.ZERO;
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            OrderDetail orderDetail = shoppingCart.getDishId() != null
+                    ? dishDetail(catalog.getDish(shoppingCart.getDishId()), shoppingCart)
+                    : setmealDetail(catalog.getSetmeal(shoppingCart.getSetmealId()), shoppingCart);
+            orderDetails.add(orderDetail);
+            goodsAmount = goodsAmount.add(orderDetail.getAmount().multiply(BigDecimal.valueOf(orderDetail.getNumber())));
+        }
+
+        // 打包费和配送费仍由客户端计算，提交的总金额不足以支付按当前价格计算的商品金额时拒绝下单，由客户端重新计价
+        BigDecimal minAmount = goodsAmount.add(BigDecimal.valueOf(orders.getPackAmount()));
+        if (orders.getAmount() == null || orders.getAmount().compareTo(minAmount) < 0) {
+            log.info("客户端提交的订单金额{}低于商品金额{}与打包费{}之和，价格目录版本：{}",
+                    orders.getAmount(), goodsAmount, orders.getPackAmount(), catalog.getVersion());
+            throw new OrderBusinessException(MessageConstant.ORDER_AMOUNT_MISMATCH);
+        }
+        return orderDetails;
+    }
+
+    private OrderDetail dishDetail(Dish dish, ShoppingCart shoppingCart) {
+        if (dish == null || !StatusConstant.ENABLE.equals(dish.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_ITEM_UNAVAILABLE);
+        }
+        return OrderDetail.builder()
+                .name(dish.getName())
+                .image(dish.getImage())
+                .dishId(dish.getId())
+                .dishFlavor(shoppingCart.getDishFlavor())
+                .number(shoppingCart.getNumber())
+                .amount(dish.getPrice())
+                .build();
+    }
+
+    private OrderDetail setmealDetail(Setmeal setmeal, ShoppingCart shoppingCart) {
+        if (setmeal == null || !StatusConstant.ENABLE.equals(setmeal.getStatus())) {
+            throw new OrderBusinessException(MessageConstant.ORDER_ITEM_UNAVAILABLE);
+        }
+        return OrderDetail.builder()
+                .name(setmeal.getName())
+                .image(setmeal.getImage())
+                .setmealId(setmeal.getId())
+                .number(shoppingCart.getNumber())
+                .amount(setmeal.getPrice())
+                .build();
+    }
+}
@@ -7,6 +7,7 @@ import com.sky.context.BaseContext;
 import com.sky.dto.OrdersSubmitDTO;
 import com.sky.entity.AddressBook;
 import com.sky.entity.OrderDetail;
+import com.sky.entity.OrderEvent;
 import com.sky.entity.Orders;
 import com.sky.entity.ShoppingCart;
 import com.sky.exception.AddressBookBusinessException;
@@ -15,25 +16,43 @@ import com.sky.exception.ShoppingCartBusinessException;
 import com.sky.mapper.AddressBookMapper;
 import com.sky.mapper.OrderDetailMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.ShoppingCartMapper;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.IdGeneratorService;
+import com.sky.service.OrderEventService;
+import com.sky.service.OrderPricingService;
 import com.sky.service.OrderService;
+import com.sky.service.OrderTimeoutService;
+import com.sky.service.ShoppingCartService;
+import com.sky.service.WorkspaceService;
 import com.sky.vo.OrderSubmitVO;
-import com.sky.websocket.WebSocketServer;
-import org.springframework.beans.BeanUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
+@Slf4j
 public class OrderServiceImpl implements OrderService {
 
+    private static final String SUBMIT_KEY = "order:submit:";
+    private static final String SUBMITTING = "SUBMITTING";
+    //提交中标记的有效期，节点宕机时到期后可以重新提交
+    private static final long SUBMITTING_SECONDS = 30;
+    //提交成功后保留结果的时间，过期后重试按订单表中的幂等键查出同一个订单
+    private static final long RESULT_HOURS = 24;
+    //与订单表idempotency_key列的长度一致
+    private static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
 
     @Autowired
     OrderMapper orderMapper;
@@ -42,62 +61,149 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     AddressBookMapper addressBookMapper;
     @Autowired
-    ShoppingCartMapper shoppingCartMapper;
+    ShoppingCartService shoppingCartService;
 
     @Autowired
-    WebSocketServer webSocketServer;
+    OrderEventService orderEventService;
+    @Autowired
+    OrderTimeoutService orderTimeoutService;
+    @Autowired
+    BusinessStatsService businessStatsService;
+    @Autowired
+    WorkspaceService workspaceService;
+    @Autowired
+    IdGeneratorService idGeneratorService;
+    @Autowired
+    OrderPricingService orderPricingService;
+    @Autowired
+    StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    TransactionTemplate transactionTemplate;
 
 
     @Override
-    @Transactional
-    public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO) {
+    public OrderSubmitVO submitOrder(OrdersSubmitDTO ordersSubmitDTO, String idempotencyKey) {
+        Long userId = BaseContext.getCurrentId();
+        // 同一用户同一幂等键同时只能提交一次，没有幂等键时同一用户同时只能提交一个订单
+        boolean keep = idempotencyKey != null && !idempotencyKey.isEmpty();
+        if (keep && idempotencyKey.length() > IDEMPOTENCY_KEY_MAX_LENGTH) {
+            throw new OrderBusinessException(MessageConstant.IDEMPOTENCY_KEY_TOO_LONG);
+        }
+        String submitKey = SUBMIT_KEY + userId + ":" + (keep ? idempotencyKey : "-");
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(submitKey, SUBMITTING, SUBMITTING_SECONDS, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(acquired)) {
+            String result = stringRedisTemplate.opsForValue().get(submitKey);
+            if (result != null && !SUBMITTING.equals(result)) {
+                // 已提交成功的请求重试时返回上次的结果
+                return JSON.parseObject(result, OrderSubmitVO.class);
+            }
+            throw new OrderBusinessException(MessageConstant.ORDER_SUBMITTING);
+        }
+        OrderSubmitVO orderSubmitVO;
+        try {
+            // redis中的结果过期或没有写成功时，以订单表中的幂等键为准
+            orderSubmitVO = keep ? getSubmitted(userId, idempotencyKey) : null;
+            if (orderSubmitVO == null) {
+                orderSubmitVO = doSubmitOrder(ordersSubmitDTO, userId, keep ? idempotencyKey : null);
+            }
+        } catch (DuplicateKeyException e) {
+            // 提交中标记过期后，同一幂等键的另一次提交已先写入订单，本次事务已回滚
+            orderSubmitVO = keep ? getSubmitted(userId, idempotencyKey) : null;
+            if (orderSubmitVO == null) {
+                stringRedisTemplate.delete(submitKey);
+                throw e;
+            }
+        } catch (RuntimeException e) {
+            stringRedisTemplate.delete(submitKey);
+            throw e;
+        }
+        try {
+            if (keep) {
+                stringRedisTemplate.opsForValue().set(submitKey, JSON.toJSONString(orderSubmitVO), RESULT_HOURS, TimeUnit.HOURS);
+            } else {
+                stringRedisTemplate.delete(submitKey);
+            }
+        } catch (RuntimeException e) {
+            // 订单已提交，结果没写进redis时重试按幂等键查询订单表
+            log.warn("保存下单结果失败：{}", submitKey, e);
+        }
+        return orderSubmitVO;
+    }
+
+    private OrderSubmitVO getSubmitted(Long userId, String idempotencyKey) {
+        Orders orders = orderMapper.getByIdempotencyKey(userId, idempotencyKey);
+        return orders == null ? null : toSubmitVO(orders);
+    }
 
+    private OrderSubmitVO toSubmitVO(Orders orders) {
+        return OrderSubmitVO.builder()
+                .orderAmount(orders.getAmount())
+                .orderNumber(orders.getNumber())
+                .orderTime(orders.getOrderTime())
+                .id(orders.getId())
+                .build();
+    }
+
+    /**
+     * 查询和组装都在事务外完成，事务中只写订单、明细和当天汇总
+     */
+    private OrderSubmitVO doSubmitOrder(OrdersSubmitDTO ordersSubmitDTO, Long userId, String idempotencyKey) {
         AddressBook addressBook = addressBookMapper.getById(ordersSubmitDTO.getAddressBookId());
         // 地址为空
         if (addressBook == null) {
             throw new AddressBookBusinessException(MessageConstant.ADDRESS_BOOK_IS_NULL);
         }
         // 购物车为空
-        Long userId = BaseContext.getCurrentId();
-        ShoppingCart shoppcart = new ShoppingCart();
-        shoppcart.setUserId(userId);
-        List<ShoppingCart> shoppingCartList = shoppingCartMapper.list(shoppcart);
+        List<ShoppingCart> shoppingCartList = shoppingCartService.list(userId);
         if (shoppingCartList == null || shoppingCartList.size() == 0) {
             throw new ShoppingCartBusinessException(MessageConstant.SHOPPING_CART_IS_NULL);
         }
-        // 向订单表添加一条数据
-        Orders orders = new Orders();
-        BeanUtils.copyProperties(ordersSubmitDTO, orders);
-        orders.setOrderTime(LocalDateTime.now());
-        orders.setPayStatus(Orders.UN_PAID);
-        orders.setStatus(Orders.PENDING_PAYMENT);
-        // 查询地址
-        orders.setNumber(String.valueOf(System.currentTimeMillis()));
-        orders.setPhone(addressBook.getPhone());
-        orders.setConsignee(addressBook.getConsignee());
-        orders.setUserId(userId);
-        orderMapper.insert(orders);
-        // 向订单明细表添加多条数据
-        Long ordersId = orders.getId();
-        List<OrderDetail> orderDetails = new ArrayList<>();
-        for (ShoppingCart shoppingCart : shoppingCartList) {
-            OrderDetail orderDetail = new OrderDetail();
-            BeanUtils.copyProperties(shoppingCart, orderDetail);
-            orderDetail.setOrderId(ordersId);
-            orderDetails.add(orderDetail);
-        }
-        orderDetailMapper.insertBatch(orderDetails);
-        // 清空购物车
-        shoppingCartMapper.deleteByUserId(userId);
-        OrderSubmitVO orderSubmitVO = OrderSubmitVO.builder()
-                .orderAmount(orders.getAmount())
-                .orderNumber(orders.getNumber())
-                .orderTime(orders.getOrderTime())
-                .id(ordersId)
+        // 订单id和明细id都提前生成，插入订单后不需要等待自增主键
+        Orders orders = Orders.builder()
+                .id(idGeneratorService.nextId())
+                .number(idGeneratorService.nextOrderNumber())
+                .status(Orders.PENDING_PAYMENT)
+                .userId(userId)
+                .addressBookId(ordersSubmitDTO.getAddressBookId())
+                .orderTime(LocalDateTime.now())
+                .payMethod(ordersSubmitDTO.getPayMethod())
+                .payStatus(Orders.UN_PAID)
+                .amount(ordersSubmitDTO.getAmount())
+                .packAmount(ordersSubmitDTO.getPackAmount() == null ? 0 : ordersSubmitDTO.getPackAmount())
+                .remark(ordersSubmitDTO.getRemark())
+                .phone(addressBook.getPhone())
+                .consignee(addressBook.getConsignee())
+                .estimatedDeliveryTime(ordersSubmitDTO.getEstimatedDeliveryTime())
+                .deliveryStatus(ordersSubmitDTO.getDeliveryStatus())
+                .tablewareNumber(ordersSubmitDTO.getTablewareNumber() == null ? 0 : ordersSubmitDTO.getTablewareNumber())
+                .tablewareStatus(ordersSubmitDTO.getTablewareStatus())
+                .idempotencyKey(idempotencyKey)
                 .build();
-        return orderSubmitVO;
+        // 按价格目录生成明细并校验金额
+        List<OrderDetail> orderDetails = orderPricingService.price(orders, shoppingCartList);
+        for (OrderDetail orderDetail : orderDetails) {
+            orderDetail.setId(idGeneratorService.nextId());
+            orderDetail.setOrderId(orders.getId());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // 向订单表添加一条数据，幂等键重复时抛出DuplicateKeyException，整个事务回滚
+            orderMapper.insert(orders);
+            // 向订单明细表添加多条数据
+            orderDetailMapper.insertBatch(orderDetails);
+            // 累加当天的订单总数，放在事务最后以缩短汇总行的锁定时间
+            businessStatsService.orderSubmitted(orders);
+            // 事务提交后从购物车扣除已下单的商品，下单失败时购物车保留
+            shoppingCartService.deduct(userId, shoppingCartList);
+            // 事务提交后登记超时时间，到期未支付自动取消
+            orderTimeoutService.schedule(orders);
+        });
+        workspaceService.invalidateOrderOverView();
+
+        return toSubmitVO(orders);
     }
 
+    @Transactional
     public void paySuccess(String outTradeNo) {
         // 当前登录用户id
         Long userId = BaseContext.getCurrentId();
@@ -114,15 +220,15 @@ public class OrderServiceImpl implements OrderService {
                 .build();
 
         orderMapper.update(orders);
+        workspaceService.invalidateOrderOverView();
 
-        //通过websocket向客户端浏览器推送消息 type orderId content
+        //来单提醒和订单状态在同一个事务中写入，提交后由分发线程通过websocket推送 type orderId content
         Map map = new HashMap();
-        map.put("type",1); // 1表示来单提醒 2表示客户催单
+        map.put("type", OrderEvent.NEW_ORDER); // 1表示来单提醒 2表示客户催单
         map.put("orderId",ordersDB.getId());
         map.put("content","订单号：" + outTradeNo);
 
-        String json = JSON.toJSONString(map);
-        webSocketServer.sendToAllClient(json);
+        orderEventService.publish(ordersDB.getId(), OrderEvent.NEW_ORDER, JSON.toJSONString(map));
     }
 
     public void reminder(Long id) {
@@ -131,10 +237,10 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderBusinessException(MessageConstant.ORDER_STATUS_ERROR);
         }
         Map map = new HashMap();
-        map.put("type", 2);
+        map.put("type", OrderEvent.REMINDER);
         map.put("orderId", id);
         map.put("content", "订单号"+orderDB.getNumber());
-        webSocketServer.sendToAllClient(JSONObject.toJSONString(map));
+        orderEventService.publish(id, OrderEvent.REMINDER, JSONObject.toJSONString(map));
     }
 
 
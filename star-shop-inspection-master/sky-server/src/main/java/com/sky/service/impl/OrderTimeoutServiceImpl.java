@@ -0,0 +1,152 @@
+package com.sky.service.impl;
+
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.JobCoordinatorService;
+import com.sky.service.OrderTimeoutService;
+import com.sky.service.WorkspaceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 待支付订单按超时时间存入redis有序集合，每秒取出到期的订单批量取消
+ * 有序集合保存在redis中，服务重启后继续生效
+ */
+@Service
+@Slf4j
+public class OrderTimeoutServiceImpl implements OrderTimeoutService {
+
+    private static final String TIMEOUT_KEY = "order:payTimeout";
+
+    //每次最多取出的到期订单数
+    private static final int BATCH_SIZE = 200;
+
+    //取出到期的订单并从集合中删除，多个节点同时执行时每个订单只会被一个节点取到
+    private static final RedisScript<List> POP_EXPIRED_SCRIPT = new DefaultRedisScript<>(
+            "local ids = redis.call('zrangebyscore', KEYS[1], '-inf', ARGV[1], 'limit', 0, ARGV[2]) " +
+            "if #ids > 0 then redis.call('zrem', KEYS[1], unpack(ids)) end " +
+            "return ids", List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private WorkspaceService workspaceService;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    public void schedule(Orders orders) {
+        long deadline = orders.getOrderTime().plusMinutes(Orders.PAY_TIMEOUT_MINUTES)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Runnable action = () -> {
+            try {
+                stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, orders.getId().toString(), deadline);
+            } catch (Exception e) {
+                //登记失败的订单由定时全量检查取消
+                log.warn("登记订单超时时间失败：{}", orders.getId(), e);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    public int cancelExpired() {
+        int cancelled = 0;
+        while (true) {
+            List<String> ids = stringRedisTemplate.execute(POP_EXPIRED_SCRIPT,
+                    Collections.singletonList(TIMEOUT_KEY),
+                    String.valueOf(System.currentTimeMillis()), String.valueOf(BATCH_SIZE));
+            if (ids == null || ids.isEmpty()) {
+                return cancelled;
+            }
+            try {
+                cancelled += cancel(ids.stream().map(Long::valueOf).collect(Collectors.toList()));
+            } catch (RuntimeException e) {
+                restore(ids);
+                throw e;
+            }
+            if (ids.size() < BATCH_SIZE) {
+                return cancelled;
+            }
+        }
+    }
+
+    /**
+     * 取消失败时把已取出的订单放回有序集合，按已到期处理，下一轮再取消
+     * @param ids
+     */
+    private void restore(List<String> ids) {
+        double now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> tuples = ids.stream()
+                .map(id -> new DefaultTypedTuple<>(id, now))
+                .collect(Collectors.toSet());
+        try {
+            stringRedisTemplate.opsForZSet().add(TIMEOUT_KEY, tuples);
+        } catch (Exception e) {
+            //放回失败的订单由定时全量检查取消
+            log.warn("放回到期订单失败：{}", ids, e);
+        }
+    }
+
+    public int cancelOverdue() {
+        LocalDateTime orderTime = LocalDateTime.now().minusMinutes(Orders.PAY_TIMEOUT_MINUTES);
+        int cancelled = 0;
+        Long lastId = 0L;
+        while (true) {
+            //只查询id，每批单独执行一条取消语句，积压再多也不会产生超长的in列表
+            List<Long> ids = orderMapper.listIdsByStatusAfterId(Orders.PENDING_PAYMENT, orderTime, lastId, BATCH_SIZE);
+            if (ids.isEmpty()) {
+                return cancelled;
+            }
+            cancelled += transactionTemplate.execute(status -> {
+                //锁已被其他节点接手时回滚本批并停止
+                jobCoordinatorService.fence();
+                return cancel(ids);
+            });
+            if (ids.size() < BATCH_SIZE) {
+                return cancelled;
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    public int cancel(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        //只取消仍处于待付款状态的订单，和支付成功同时发生时以先执行的为准
+        int cancelled = orderMapper.cancelByIds(ids, Orders.PENDING_PAYMENT, "订单超时,自动取消!", LocalDateTime.now());
+        if (cancelled > 0) {
+            log.info("取消超时未支付的订单{}个", cancelled);
+            workspaceService.invalidateOrderOverView();
+        }
+        return cancelled;
+    }
+}
@@ -1,38 +1,75 @@
 package com.sky.service.impl;
 
+import com.alibaba.fastjson.JSON;
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
 import com.sky.dto.GoodsSalesDTO;
-import com.sky.entity.Orders;
+import com.sky.entity.DailyBusinessStats;
+import com.sky.exception.ReportBusinessException;
+import com.sky.mapper.DailyBusinessStatsMapper;
 import com.sky.mapper.OrderMapper;
 import com.sky.mapper.UserMapper;
-import com.sky.result.Result;
+import com.sky.properties.ReportProperties;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.ReportService;
-import com.sky.service.WorkspaceService;
+import com.sky.utils.DateRangeUtil;
 import com.sky.vo.*;
-import io.swagger.models.auth.In;
+import com.sky.websocket.WebSocketBroadcaster;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFRow;
 import org.apache.poi.xssf.usermodel.XSSFSheet;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.bind.annotation.GetMapping;
 
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class ReportServiceImpl implements ReportService {
 
+    //模板中第一行明细数据的行号
+    private static final int DETAIL_FIRST_ROW = 7;
+    //明细数据的最后一列
+    private static final int DETAIL_LAST_CELL = 6;
+    //导出时内存中保留的行数，超出的行写入临时文件
+    private static final int EXCEL_WINDOW_SIZE = 100;
+
+    //导出任务，key为前缀加任务id，所有节点共用，轮询和下载可以落在任意节点
+    private static final String EXPORT_JOB_KEY = "report:export:job:";
+    //正在执行的导出任务id，key为前缀加导出文件名，相同数据的导出请求共用一个任务
+    private static final String EXPORT_RUNNING_KEY = "report:export:running:";
+    //执行标记的过期时间，执行导出的节点宕机后标记自动失效
+    private static final long EXPORT_RUNNING_MINUTES = 30;
+    //推送给员工的消息类型，3表示报表导出结束（1和2是来单提醒和催单）
+    private static final int MESSAGE_TYPE_EXPORT_FINISHED = 3;
+
     @Autowired
     private OrderMapper orderMapper;
 
@@ -40,30 +77,32 @@ public class ReportServiceImpl implements ReportService {
     private UserMapper userMapper;
 
     @Autowired
-    private WorkspaceService workspaceService;
+    private BusinessStatsService businessStatsService;
+
+    @Autowired
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
+
+    @Autowired
+    private ReportProperties reportProperties;
+
+    @Autowired
+    private ThreadPoolTaskExecutor reportExportExecutor;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private WebSocketBroadcaster webSocketBroadcaster;
 
     @Override
     public TurnoverReportVO getTurnover(LocalDate begin, LocalDate end) {
 
-        List<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        while (!begin.equals(end)){
-            begin = begin.plusDays(1);//日期计算，获得指定日期后1天的日期
-            dateList.add(begin);
-        }
-
-        List<Double> turnoverList = new ArrayList<>();
-        for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            Map map = new HashMap();
-            map.put("status", Orders.COMPLETED);
-            map.put("begin",beginTime);
-            map.put("end", endTime);
-            Double turnover = orderMapper.sumByMap(map);
-            turnover = turnover == null ? 0.0 : turnover;
-            turnoverList.add(turnover);
+        //从每日汇总表读取区间内每天的营业额，没有数据的日期已补0
+        List<Double> turnoverList = new ArrayList<>(dateList.size());
+        for (DailyBusinessStats stats : businessStatsService.list(begin, end)) {
+            turnoverList.add(stats.getTurnover().doubleValue());
         }
 
         //数据封装
@@ -77,26 +116,18 @@ public class ReportServiceImpl implements ReportService {
     @Override
     public UserReportVO getUserStatistics(LocalDate begin, LocalDate end) {
 
-        List<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        while (!begin.equals(end)){
-            begin = begin.plusDays(1);//日期计算，获得指定日期后1天的日期
-            dateList.add(begin);
-        }
+        //起始日期之前的用户总数 select count(id) from user where create_time <= ?
+        int totalUser = getUserCount(null, LocalDateTime.of(begin.minusDays(1), LocalTime.MAX));
 
-        List<Integer> newUserList = new ArrayList<>();
-        List<Integer> totalUserList = new ArrayList<>();
+        //总用户数 = 起始日期之前的用户总数 + 截止到当天的新增用户数之和
+        List<Integer> newUserList = new ArrayList<>(dateList.size());
+        List<Integer> totalUserList = new ArrayList<>(dateList.size());
+        for (DailyBusinessStats stats : businessStatsService.list(begin, end)) {
+            totalUser += stats.getNewUsers();
 
-        for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            //新增用户数量 select count(id) from user where create_time > ? and create_time < ?
-            Integer newUser = getUserCount(beginTime, endTime);
-            //总用户数量 select count(id) from user where  create_time < ?
-            Integer totalUser = getUserCount(null, endTime);
-
-            newUserList.add(newUser);
+            newUserList.add(stats.getNewUsers());
             totalUserList.add(totalUser);
         }
         return UserReportVO.builder()
@@ -107,38 +138,28 @@ public class ReportServiceImpl implements ReportService {
     }
 
     public OrderReportVO getOrderStatistics(LocalDate begin, LocalDate end){
-        List<LocalDate> dateList = new ArrayList<>();
-        dateList.add(begin);
+        List<LocalDate> dateList = getDateList(begin, end);
 
-        while (!begin.equals(end)){
-            begin = begin.plusDays(1);
-            dateList.add(begin);
-        }
         //每天订单总数集合
-        List<Integer> orderCountList = new ArrayList<>();
+        List<Integer> orderCountList = new ArrayList<>(dateList.size());
         //每天有效订单数集合
-        List<Integer> validOrderCountList = new ArrayList<>();
-        for (LocalDate date : dateList) {
-            LocalDateTime beginTime = LocalDateTime.of(date, LocalTime.MIN);
-            LocalDateTime endTime = LocalDateTime.of(date, LocalTime.MAX);
-            //查询每天的总订单数 select count(id) from orders where order_time > ? and order_time < ?
-            Integer orderCount = getOrderCount(beginTime, endTime, null);
-
-            //查询每天的有效订单数 select count(id) from orders where order_time > ? and order_time < ? and status = ?
-            Integer validOrderCount = getOrderCount(beginTime, endTime, Orders.COMPLETED);
-
-            orderCountList.add(orderCount);
-            validOrderCountList.add(validOrderCount);
-        }
-
+        List<Integer> validOrderCountList = new ArrayList<>(dateList.size());
         //时间区间内的总订单数
-        Integer totalOrderCount = orderCountList.stream().reduce(Integer::sum).get();
+        int totalOrderCount = 0;
         //时间区间内的总有效订单数
-        Integer validOrderCount = validOrderCountList.stream().reduce(Integer::sum).get();
+        int validOrderCount = 0;
+        //从每日汇总表读取区间内每天的订单数，没有数据的日期已补0
+        for (DailyBusinessStats stats : businessStatsService.list(begin, end)) {
+            orderCountList.add(stats.getOrderCount());
+            validOrderCountList.add(stats.getValidOrderCount());
+            totalOrderCount += stats.getOrderCount();
+            validOrderCount += stats.getValidOrderCount();
+        }
+
         //订单完成率
         Double orderCompletionRate = 0.0;
         if(totalOrderCount != 0){
-            orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
+            orderCompletionRate = (double) validOrderCount / totalOrderCount;
         }
         return OrderReportVO.builder()
                 .dateList(StringUtils.join(dateList, ","))
@@ -166,60 +187,309 @@ public class ReportServiceImpl implements ReportService {
     }
 
     @Override
-    public void exportBusinessData(HttpServletResponse response) {
-        LocalDate begin = LocalDate.now().minusDays(30);
-        LocalDate end = LocalDate.now().minusDays(1);
-        BusinessDataVO businessData = workspaceService.getBusinessData(LocalDateTime.of(begin, LocalTime.MIN), LocalDateTime.of(end, LocalTime.MAX));
+    public void exportBusinessData(LocalDate begin, LocalDate end, HttpServletResponse response) {
+        DateRangeUtil.check(begin, end, reportProperties.getMaxRangeDays());
+        try {
+            ServletOutputStream outputStream = response.getOutputStream();
+            writeBusinessData(begin, end, outputStream);
+            outputStream.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 把时间段内的运营数据写入Excel
+     * 模板只保留表头和概览部分，明细行通过SXSSF流式写出，内存中最多保留EXCEL_WINDOW_SIZE行
+     * @param begin
+     * @param end
+     * @param outputStream
+     * @throws IOException
+     */
+    private void writeBusinessData(LocalDate begin, LocalDate end, OutputStream outputStream) throws IOException {
+        //概览数据和明细数据都来自同一次汇总表查询
+        List<DailyBusinessStats> statsList = businessStatsService.list(begin, end);
+        BusinessDataVO businessData = businessStatsService.summarize(statsList);
+
         // 写入到Excel
         InputStream excelStream = this.getClass().getClassLoader().getResourceAsStream("template/运营数据报表模板.xlsx");
+        XSSFWorkbook template = new XSSFWorkbook(excelStream);
+
+        XSSFSheet sheet1 = template.getSheet("Sheet1");    // 获取标签页
+        XSSFRow row = sheet1.getRow(1);
+        row.getCell(1).setCellValue("时间:" + begin + "至" + end);
+
+        /* 概览数据 **/
+        row = sheet1.getRow(3);
+        row.getCell(2).setCellValue(businessData.getTurnover());
+        row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
+        row.getCell(6).setCellValue(businessData.getNewUsers());
+
+        row = sheet1.getRow(4);
+        row.getCell(2).setCellValue(businessData.getValidOrderCount());
+        row.getCell(4).setCellValue(businessData.getUnitPrice());
+
+        //SXSSF只能在模板最后一行之后追加，先记下模板明细行的样式，再删掉模板里预留的明细行
+        XSSFRow detailRow = sheet1.getRow(DETAIL_FIRST_ROW);
+        float detailRowHeight = detailRow.getHeightInPoints();
+        CellStyle[] detailStyles = new CellStyle[DETAIL_LAST_CELL + 1];
+        for (int i = 1; i <= DETAIL_LAST_CELL; i++) {
+            detailStyles[i] = detailRow.getCell(i).getCellStyle();
+        }
+        for (int i = sheet1.getLastRowNum(); i >= DETAIL_FIRST_ROW; i--) {
+            XSSFRow templateRow = sheet1.getRow(i);
+            if (templateRow != null) {
+                sheet1.removeRow(templateRow);
+            }
+        }
 
+        SXSSFWorkbook excel = new SXSSFWorkbook(template, EXCEL_WINDOW_SIZE);
         try {
-            XSSFWorkbook excel = new XSSFWorkbook(excelStream);
+            SXSSFSheet sheet = excel.getSheet("Sheet1");
 
-            XSSFSheet sheet1 = excel.getSheet("Sheet1");    // 获取标签页
-            XSSFRow row = sheet1.getRow(1);
-            row.getCell(1).setCellValue("时间:" + begin + "至" + end);
+            /* 明细数据 **/
+            int rowIndex = DETAIL_FIRST_ROW;
+            for (DailyBusinessStats stats : statsList) {
+                BusinessDataVO dayData = businessStatsService.summarize(Collections.singletonList(stats));
+                Row dayRow = sheet.createRow(rowIndex++);
+                dayRow.setHeightInPoints(detailRowHeight);
+                createCell(dayRow, 1, detailStyles).setCellValue(stats.getStatDate().toString());
+                createCell(dayRow, 2, detailStyles).setCellValue(dayData.getTurnover());
+                createCell(dayRow, 3, detailStyles).setCellValue(dayData.getValidOrderCount());
+                createCell(dayRow, 4, detailStyles).setCellValue(dayData.getOrderCompletionRate());
+                createCell(dayRow, 5, detailStyles).setCellValue(dayData.getUnitPrice());
+                createCell(dayRow, 6, detailStyles).setCellValue(dayData.getNewUsers());
+            }
+
+            excel.write(outputStream);
+        } finally {
+            //删除SXSSF写出明细行时产生的临时文件
+            excel.dispose();
+            excel.close();
+        }
+    }
 
-            /* 概览数据 **/
-            row = sheet1.getRow(3);
-            row.getCell(2).setCellValue(businessData.getTurnover());
-            row.getCell(4).setCellValue(businessData.getOrderCompletionRate());
-            row.getCell(6).setCellValue(businessData.getNewUsers());
+    public ReportExportJobVO submitExportJob(LocalDate begin, LocalDate end) {
+        DateRangeUtil.check(begin, end, reportProperties.getMaxRangeDays());
+        //文件名由日期区间和区间数据的最后更新时间组成，数据变化后文件名随之变化
+        LocalDateTime version = dailyBusinessStatsMapper.getLastUpdateTime(begin, end);
+        String fileName = begin + "_" + end + "_"
+                + (version == null ? "0" : version.format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))) + ".xlsx";
+        Path file = Paths.get(reportProperties.getExportDir(), fileName);
+
+        ReportExportJobVO job = ReportExportJobVO.builder()
+                .jobId(UUID.randomUUID().toString().replace("-", ""))
+                .begin(begin)
+                .end(end)
+                .fileName(fileName)
+                .status(ReportExportJobVO.WAITING)
+                .createTime(LocalDateTime.now())
+                .build();
 
-            row = sheet1.getRow(4);
-            row.getCell(2).setCellValue(businessData.getValidOrderCount());
-            row.getCell(4).setCellValue(businessData.getUnitPrice());
+        //已经导出过相同数据，直接复用文件
+        if (Files.exists(file)) {
+            try {
+                //刷新文件时间，避免刚复用的文件被当作过期文件清理
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                log.warn("刷新导出文件时间失败：{}", file, e);
+            }
+            job.setStatus(ReportExportJobVO.FINISHED);
+            job.setFinishTime(LocalDateTime.now());
+            saveExportJob(job);
+            return job;
+        }
 
-            /* 明细数据 **/
-            for (int i=0; i<30; i++) {
-                LocalDate date = begin.plusDays(i);
-                BusinessDataVO dayData = workspaceService.getBusinessData(LocalDateTime.of(date, LocalTime.MIN), LocalDateTime.of(date, LocalTime.MAX));
-                row = sheet1.getRow(7 + i);
-                row.getCell(1).setCellValue(date.toString());
-                row.getCell(2).setCellValue(dayData.getTurnover());
-                row.getCell(3).setCellValue(dayData.getValidOrderCount());
-                row.getCell(4).setCellValue(dayData.getOrderCompletionRate());
-                row.getCell(5).setCellValue(dayData.getUnitPrice());
-                row.getCell(6).setCellValue(dayData.getNewUsers());
+        //先保存任务再抢占执行标记，其他节点拿到执行中的任务id时一定能查到任务
+        saveExportJob(job);
+        Boolean claimed = stringRedisTemplate.opsForValue()
+                .setIfAbsent(EXPORT_RUNNING_KEY + fileName, job.getJobId(), EXPORT_RUNNING_MINUTES, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(claimed)) {
+            //相同数据正在导出，返回正在执行的任务
+            stringRedisTemplate.delete(EXPORT_JOB_KEY + job.getJobId());
+            String runningJobId = stringRedisTemplate.opsForValue().get(EXPORT_RUNNING_KEY + fileName);
+            if (runningJobId == null) {
+                //正在执行的任务刚好结束
+                throw new ReportBusinessException(MessageConstant.EXPORT_JOB_BUSY);
             }
+            return getExportJob(runningJobId);
+        }
 
-            // 上传
-            ServletOutputStream outputStream = response.getOutputStream();
-            excel.write(outputStream);
+        try {
+            Long empId = BaseContext.getCurrentId();
+            reportExportExecutor.execute(() -> runExportJob(job.getJobId(), begin, end, file, empId));
+        } catch (TaskRejectedException e) {
+            stringRedisTemplate.delete(EXPORT_RUNNING_KEY + fileName);
+            stringRedisTemplate.delete(EXPORT_JOB_KEY + job.getJobId());
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_BUSY);
+        }
+        return job;
+    }
+
+    public ReportExportJobVO getExportJob(String jobId) {
+        String json = stringRedisTemplate.opsForValue().get(EXPORT_JOB_KEY + jobId);
+        if (json == null) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FOUND);
+        }
+        return JSON.parseObject(json, ReportExportJobVO.class);
+    }
 
+    public void downloadExportJob(String jobId, HttpServletResponse response) {
+        ReportExportJobVO job = getExportJob(jobId);
+        if (!ReportExportJobVO.FINISHED.equals(job.getStatus())) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FINISHED);
+        }
+        //导出目录是所有节点挂载的共享目录，任意节点都能读到其他节点导出的文件
+        Path file = Paths.get(reportProperties.getExportDir(), job.getFileName());
+        if (!Files.exists(file)) {
+            throw new ReportBusinessException(MessageConstant.EXPORT_JOB_NOT_FOUND);
+        }
+
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition", "attachment;filename=" + file.getFileName());
+        try {
+            ServletOutputStream outputStream = response.getOutputStream();
+            Files.copy(file, outputStream);
             outputStream.close();
-            excel.close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Integer getOrderCount(LocalDateTime beginTime, LocalDateTime endTime, Integer status) {
-        Map map = new HashMap();
+    public void cleanExpiredExportJobs() {
+        //任务记录由redis按过期时间自动删除，这里只清理共享目录中的过期文件
+        Path exportDir = Paths.get(reportProperties.getExportDir());
+        if (!Files.isDirectory(exportDir)) {
+            return;
+        }
+        long expireMillis = System.currentTimeMillis() - reportProperties.getExportFileTtlHours() * 3600 * 1000;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(exportDir)) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toMillis() < expireMillis
+                        && !Boolean.TRUE.equals(stringRedisTemplate.hasKey(EXPORT_RUNNING_KEY + file.getFileName()))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理导出文件失败", e);
+        }
+    }
+
+    /**
+     * 在导出线程池中执行导出任务，结束后通知提交任务的员工
+     * @param jobId
+     * @param begin
+     * @param end
+     * @param file
+     * @param empId
+     */
+    private void runExportJob(String jobId, LocalDate begin, LocalDate end, Path file, Long empId) {
+        updateExportJob(jobId, ReportExportJobVO.RUNNING, null);
+        Path tempFile = null;
+        try {
+            Files.createDirectories(file.getParent());
+            //先写入临时文件，写完后再改名，避免下载到写了一半的文件
+            tempFile = Files.createTempFile(file.getParent(), jobId, ".tmp");
+            try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+                writeBusinessData(begin, end, outputStream);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            updateExportJob(jobId, ReportExportJobVO.FINISHED, null);
+            notifyExportFinished(empId, jobId, ReportExportJobVO.FINISHED);
+        } catch (Exception e) {
+            log.error("导出任务失败：{}", jobId, e);
+            updateExportJob(jobId, ReportExportJobVO.FAILED, e.getMessage());
+            notifyExportFinished(empId, jobId, ReportExportJobVO.FAILED);
+        } finally {
+            stringRedisTemplate.delete(EXPORT_RUNNING_KEY + file.getFileName());
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("删除导出临时文件失败：{}", tempFile, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 通过员工主题通知导出结束，员工可能连接在任意节点；通知失败时前端仍可轮询任务状态
+     * @param empId
+     * @param jobId
+     * @param status
+     */
+    private void notifyExportFinished(Long empId, String jobId, Integer status) {
+        if (empId == null) {
+            return;
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("type", MESSAGE_TYPE_EXPORT_FINISHED);
+        map.put("jobId", jobId);
         map.put("status", status);
-        map.put("begin",beginTime);
-        map.put("end", endTime);
-        return orderMapper.countByMap(map);
+        map.put("content", ReportExportJobVO.FINISHED.equals(status) ? "报表导出完成" : "报表导出失败");
+        try {
+            webSocketBroadcaster.publishToEmployee(empId, JSON.toJSONString(map));
+        } catch (Exception e) {
+            log.warn("推送导出结束通知失败：{}", jobId, e);
+        }
+    }
+
+    /**
+     * 更新redis中的任务状态
+     * @param jobId
+     * @param status
+     * @param errorMsg
+     */
+    private void updateExportJob(String jobId, Integer status, String errorMsg) {
+        String json = stringRedisTemplate.opsForValue().get(EXPORT_JOB_KEY + jobId);
+        if (json == null) {
+            return;
+        }
+        ReportExportJobVO job = JSON.parseObject(json, ReportExportJobVO.class);
+        boolean done = ReportExportJobVO.FINISHED.equals(status) || ReportExportJobVO.FAILED.equals(status);
+        saveExportJob(ReportExportJobVO.builder()
+                .jobId(jobId)
+                .begin(job.getBegin())
+                .end(job.getEnd())
+                .fileName(job.getFileName())
+                .status(status)
+                .errorMsg(errorMsg)
+                .createTime(job.getCreateTime())
+                .finishTime(done ? LocalDateTime.now() : null)
+                .build());
+    }
+
+    /**
+     * 保存任务状态，保留时间和导出文件相同
+     * @param job
+     */
+    private void saveExportJob(ReportExportJobVO job) {
+        stringRedisTemplate.opsForValue().set(EXPORT_JOB_KEY + job.getJobId(), JSON.toJSONString(job),
+                reportProperties.getExportFileTtlHours(), TimeUnit.HOURS);
+    }
+
+    private Cell createCell(Row row, int column, CellStyle[] styles) {
+        Cell cell = row.createCell(column);
+        cell.setCellStyle(styles[column]);
+        return cell;
+    }
+
+    /**
+     * 获取[begin, end]区间内的每一天，区间不合法时抛出异常
+     * @param begin
+     * @param end
+     * @return
+     */
+    private List<LocalDate> getDateList(LocalDate begin, LocalDate end) {
+        DateRangeUtil.check(begin, end, reportProperties.getMaxRangeDays());
+        List<LocalDate> dateList = new ArrayList<>();
+        dateList.add(begin);
+
+        while (!begin.equals(end)){
+            begin = begin.plusDays(1);//日期计算，获得指定日期后1天的日期
+            dateList.add(begin);
+        }
+        return dateList;
     }
 
     private Integer getUserCount(LocalDateTime beginTime, LocalDateTime endTime) {
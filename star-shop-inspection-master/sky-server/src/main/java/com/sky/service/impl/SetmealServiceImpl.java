@@ -2,6 +2,7 @@ package com.sky.service.impl;
 
 import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
+import com.sky.cache.CatalogSnapshotHolder;
 import com.sky.constant.MessageConstant;
 import com.sky.constant.StatusConstant;
 import com.sky.dto.SetmealDTO;
@@ -15,6 +16,7 @@ import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealDishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.result.PageResult;
+import com.sky.service.CatalogStatsService;
 import com.sky.service.SetmealService;
 import com.sky.vo.DishItemVO;
 import com.sky.vo.SetmealVO;
@@ -24,6 +26,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -39,6 +42,12 @@ public class SetmealServiceImpl implements SetmealService {
     @Autowired
     private DishMapper dishMapper;
 
+    @Autowired
+    private CatalogStatsService catalogStatsService;
+
+    @Autowired
+    private CatalogSnapshotHolder catalogSnapshotHolder;
+
     /**
      * 新增套餐，同时需要保存 套餐和菜品 的关联关系
      * @param setmealDTO
@@ -65,6 +74,8 @@ public class SetmealServiceImpl implements SetmealService {
         // 保存套餐表和菜品表的 关联关系
         setmealDishMapper.insertBatch(setmealDishes);
 
+        catalogStatsService.setmealStatusChanged(null, setmeal.getStatus());
+        catalogSnapshotHolder.changed();
     }
 
     /**
@@ -106,9 +117,14 @@ public class SetmealServiceImpl implements SetmealService {
     public void update(SetmealDTO setmealDTO) {
         Setmeal setmeal = new Setmeal();
         BeanUtils.copyProperties(setmealDTO, setmeal);
+        Integer oldStatus = setmeal.getStatus() == null ? null : setmealMapper.getById(setmeal.getId()).getStatus();
 
         //1、修改套餐表，执行update
         setmealMapper.update(setmeal);
+        if (setmeal.getStatus() != null) {
+            catalogStatsService.setmealStatusChanged(oldStatus, setmeal.getStatus());
+        }
+        catalogSnapshotHolder.changed();
 
         //套餐id
         Long setmealId = setmealDTO.getId();
@@ -132,12 +148,14 @@ public class SetmealServiceImpl implements SetmealService {
      */
     @Transactional
     public void deleteBatch(List<Long> ids) {
+        List<Integer> statusList = new ArrayList<>();
         ids.forEach(id->{
             Setmeal setmeal = setmealMapper.getById(id);
             if (StatusConstant.ENABLE==setmeal.getStatus()){
                 //起售中的套餐不能删除
                 throw new DeletionNotAllowedException(MessageConstant.DISH_ON_SALE);
             }
+            statusList.add(setmeal.getStatus());
         });
 
         ids.forEach(setmealId->{
@@ -146,7 +164,8 @@ public class SetmealServiceImpl implements SetmealService {
             //删除套餐菜品关系表中的数据
             setmealDishMapper.deleteBySetmealId(setmealId);
         });
-
+        statusList.forEach(status -> catalogStatsService.setmealStatusChanged(status, null));
+        catalogSnapshotHolder.changed();
     }
 
     /**
@@ -171,11 +190,14 @@ public class SetmealServiceImpl implements SetmealService {
             }
         }
         // 2.更新套餐状态（起售或停售）
+        Integer oldStatus = setmealMapper.getById(id).getStatus();
         Setmeal setmeal = Setmeal.builder()
                 .status(status)
                 .id(id)
                 .build();
         setmealMapper.update(setmeal);
+        catalogStatsService.setmealStatusChanged(oldStatus, status);
+        catalogSnapshotHolder.changed();
     }
 
     /**
@@ -1,48 +1,134 @@
 package com.sky.service.impl;
 
+import com.alibaba.fastjson.JSON;
 import com.sky.context.BaseContext;
 import com.sky.dto.ShoppingCartDTO;
 import com.sky.entity.Dish;
 import com.sky.entity.Setmeal;
 import com.sky.entity.ShoppingCart;
+import com.sky.exception.JobLeaseLostException;
 import com.sky.mapper.DishMapper;
 import com.sky.mapper.SetmealMapper;
 import com.sky.mapper.ShoppingCartMapper;
+import com.sky.properties.ShoppingCartProperties;
+import com.sky.service.JobCoordinatorService;
 import com.sky.service.ShoppingCartService;
-import org.springframework.beans.BeanUtils;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 购物车保存在redis中，每个用户两个hash：商品信息和数量，另有一个标记表示已从数据库加载过
+ * 改动过的用户记入待写回集合，由定时任务批量写回shopping_cart表，数据库只用于redis中的购物车过期或丢失后恢复
+ */
 @Service
+@Slf4j
 public class ShoppingCartServiceImpl implements ShoppingCartService {
 
+    private static final String KEY_PREFIX = "shopping_cart:";
+    private static final String DIRTY_KEY = "shopping_cart:dirty";
+
+    //未加载
+    private static final long NOT_LOADED = -2;
+    //购物车中没有该商品且没有传入商品信息
+    private static final long ITEM_MISSING = -1;
+
+    //已加载过的用户直接返回，否则写入从数据库读到的购物车，ARGV[2]之后每三个一组：字段、商品信息、数量
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[3]) == 1 then return 0 end " +
+            "for i = 2, #ARGV, 3 do " +
+            "  redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+            "  redis.call('hset', KEYS[2], ARGV[i], ARGV[i + 2]) " +
+            "end " +
+            "redis.call('set', KEYS[3], '1', 'px', ARGV[1]) " +
+            "redis.call('pexpire', KEYS[1], ARGV[1]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[1]) " +
+            "return 1", Long.class);
+
+    //增减商品数量，减到0时删除该商品，返回改动后的数量
+    private static final RedisScript<Long> CHANGE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[3]) == 0 then return -2 end " +
+            "if redis.call('hexists', KEYS[1], ARGV[1]) == 0 then " +
+            "  if ARGV[2] == '' or tonumber(ARGV[3]) <= 0 then return -1 end " +
+            "  redis.call('hset', KEYS[1], ARGV[1], ARGV[2]) " +
+            "end " +
+            "local n = redis.call('hincrby', KEYS[2], ARGV[1], ARGV[3]) " +
+            "if n <= 0 then " +
+            "  redis.call('hdel', KEYS[1], ARGV[1]) " +
+            "  redis.call('hdel', KEYS[2], ARGV[1]) " +
+            "  n = 0 " +
+            "end " +
+            "redis.call('pexpire', KEYS[1], ARGV[4]) " +
+            "redis.call('pexpire', KEYS[2], ARGV[4]) " +
+            "redis.call('pexpire', KEYS[3], ARGV[4]) " +
+            "redis.call('sadd', KEYS[4], ARGV[5]) " +
+            "return n", Long.class);
+
+    //清空购物车，保留已加载标记，避免写回数据库前又从数据库加载出旧数据
+    private static final RedisScript<Long> CLEAN_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('del', KEYS[1], KEYS[2]) " +
+            "redis.call('set', KEYS[3], '1', 'px', ARGV[1]) " +
+            "redis.call('sadd', KEYS[4], ARGV[2]) " +
+            "return 1", Long.class);
+
+    //按下单时的数量扣减多个商品，ARGV[2]之后每两个一组：字段、数量
+    private static final RedisScript<Long> DEDUCT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[3]) == 0 then return 0 end " +
+            "for i = 2, #ARGV, 2 do " +
+            "  if redis.call('hexists', KEYS[2], ARGV[i]) == 1 then " +
+            "    if redis.call('hincrby', KEYS[2], ARGV[i], -tonumber(ARGV[i + 1])) <= 0 then " +
+            "      redis.call('hdel', KEYS[1], ARGV[i]) " +
+            "      redis.call('hdel', KEYS[2], ARGV[i]) " +
+            "    end " +
+            "  end " +
+            "end " +
+            "redis.call('sadd', KEYS[4], ARGV[1]) " +
+            "return 1", Long.class);
+
     @Autowired
     ShoppingCartMapper shoppingCartMapper;
     @Autowired
     DishMapper dishMapper;
     @Autowired
     SetmealMapper setmealMapper;
+    @Autowired
+    StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    ShoppingCartProperties shoppingCartProperties;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+    @Autowired
+    JobCoordinatorService jobCoordinatorService;
 
     @Override
     public void addShoppingCart(ShoppingCartDTO shoppingCartDTO) {
-        // 判断当前商品是否已经存在
-        ShoppingCart shoppingCart = new ShoppingCart();
-        BeanUtils.copyProperties(shoppingCartDTO, shoppingCart);
         Long userId = BaseContext.getCurrentId();
-        shoppingCart.setUserId(userId);
-        List<ShoppingCart> list = shoppingCartMapper.list(shoppingCart);
-
-
-        if (list != null && list.size() > 0) {
-            // 如果存在就加一
-            ShoppingCart cart = list.get(0);
-            cart.setNumber(cart.getNumber() + 1);
-            shoppingCartMapper.updateNumberById(cart);
-        } else {
-            // 如果不存在才创建
+        String field = fieldOf(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+        // 已在购物车中的商品直接加一，不需要查询商品信息
+        long number = change(userId, field, "", 1);
+        if (number == ITEM_MISSING) {
+            ShoppingCart shoppingCart = ShoppingCart.builder()
+                    .dishId(shoppingCartDTO.getDishId())
+                    .setmealId(shoppingCartDTO.getSetmealId())
+                    .dishFlavor(shoppingCartDTO.getDishFlavor())
+                    .createTime(LocalDateTime.now())
+                    .build();
             Long dishId = shoppingCart.getDishId();
             if (dishId != null) {
                 // 添加的是菜品
@@ -52,31 +138,195 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
                 shoppingCart.setAmount(dish.getPrice());
             } else {
                 // 添加的是套餐
-                Long setmealId = shoppingCart.getSetmealId();
-                Setmeal setmeal = setmealMapper.getById(setmealId);
-
+                Setmeal setmeal = setmealMapper.getById(shoppingCart.getSetmealId());
                 shoppingCart.setName(setmeal.getName());
                 shoppingCart.setImage(setmeal.getImage());
                 shoppingCart.setAmount(setmeal.getPrice());
-
             }
-            shoppingCart.setNumber(1);
-            shoppingCart.setCreateTime(LocalDateTime.now());
-            shoppingCartMapper.insert(shoppingCart);
+            change(userId, field, JSON.toJSONString(shoppingCart), 1);
         }
+    }
 
+    public void subShoppingCart(ShoppingCartDTO shoppingCartDTO) {
+        Long userId = BaseContext.getCurrentId();
+        String field = fieldOf(shoppingCartDTO.getDishId(), shoppingCartDTO.getSetmealId(), shoppingCartDTO.getDishFlavor());
+        change(userId, field, "", -1);
     }
 
     public List<ShoppingCart> list(Long currentId) {
-        return shoppingCartMapper.list(
-                ShoppingCart
-                .builder()
-                .userId(BaseContext.getCurrentId())
-                .build());
-
+        List<ShoppingCart> list = read(currentId);
+        if (list == null) {
+            list = load(currentId);
+        }
+        return list;
     }
 
     public void clean() {
-        shoppingCartMapper.deleteByUserId(BaseContext.getCurrentId());
+        clean(BaseContext.getCurrentId());
+    }
+
+    public void clean(Long userId) {
+        Runnable action = () -> stringRedisTemplate.execute(CLEAN_SCRIPT, keysOf(userId),
+                String.valueOf(expireMillis()), userId.toString());
+        afterCommit(action);
+    }
+
+    public void deduct(Long userId, List<ShoppingCart> shoppingCartList) {
+        List<String> args = new ArrayList<>();
+        args.add(userId.toString());
+        for (ShoppingCart shoppingCart : shoppingCartList) {
+            args.add(fieldOf(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
+            args.add(String.valueOf(shoppingCart.getNumber()));
+        }
+        afterCommit(() -> stringRedisTemplate.execute(DEDUCT_SCRIPT, keysOf(userId), args.toArray()));
+    }
+
+    public int flush() {
+        int flushed = 0;
+        List<String> failed = new ArrayList<>();
+        JobLeaseLostException leaseLost = null;
+        List<String> userIds;
+        do {
+            userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, shoppingCartProperties.getFlushBatchSize());
+            if (userIds == null) {
+                break;
+            }
+            for (int i = 0; i < userIds.size() && leaseLost == null; i++) {
+                String userId = userIds.get(i);
+                try {
+                    persist(Long.valueOf(userId));
+                    flushed++;
+                } catch (JobLeaseLostException e) {
+                    // 本批剩下的用户交给接手的节点写回
+                    failed.addAll(userIds.subList(i, userIds.size()));
+                    leaseLost = e;
+                } catch (Exception e) {
+                    failed.add(userId);
+                    log.warn("购物车写回数据库失败：{}", userId, e);
+                }
+            }
+        } while (leaseLost == null && userIds.size() == shoppingCartProperties.getFlushBatchSize());
+        if (!failed.isEmpty()) {
+            // 放回待写回集合，下次重试
+            stringRedisTemplate.opsForSet().add(DIRTY_KEY, failed.toArray(new String[0]));
+        }
+        if (leaseLost != null) {
+            throw leaseLost;
+        }
+        return flushed;
+    }
+
+    /**
+     * 用redis中的购物车覆盖数据库中的购物车
+     * 先从待写回集合取出再读购物车，读之后的改动会重新记入集合，下次写回
+     */
+    private void persist(Long userId) {
+        List<ShoppingCart> list = read(userId);
+        if (list == null) {
+            // redis中的购物车已过期，数据库中是最后一次写回的数据
+            return;
+        }
+        list.forEach(cart -> cart.setUserId(userId));
+        transactionTemplate.executeWithoutResult(status -> {
+            //锁已被其他节点接手时不再写回，避免以旧覆盖新
+            jobCoordinatorService.fence();
+            shoppingCartMapper.deleteByUserId(userId);
+            if (!list.isEmpty()) {
+                shoppingCartMapper.insertBatch(list);
+            }
+        });
+    }
+
+    /**
+     * 增减商品数量，购物车未加载时先从数据库加载
+     */
+    private long change(Long userId, String field, String item, int delta) {
+        List<String> keys = keysOf(userId);
+        String expire = String.valueOf(expireMillis());
+        Long number = stringRedisTemplate.execute(CHANGE_SCRIPT, keys, field, item, String.valueOf(delta), expire, userId.toString());
+        if (number != null && number == NOT_LOADED) {
+            load(userId);
+            number = stringRedisTemplate.execute(CHANGE_SCRIPT, keys, field, item, String.valueOf(delta), expire, userId.toString());
+        }
+        return number == null ? 0 : number;
+    }
+
+    /**
+     * 读取redis中的购物车，未加载时返回null
+     */
+    private List<ShoppingCart> read(Long userId) {
+        List<String> keys = keysOf(userId);
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.hashCommands().hGetAll(keys.get(0).getBytes(StandardCharsets.UTF_8));
+            connection.hashCommands().hGetAll(keys.get(1).getBytes(StandardCharsets.UTF_8));
+            connection.keyCommands().exists(keys.get(2).getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        if (!Boolean.TRUE.equals(results.get(2))) {
+            return null;
+        }
+        Map<String, String> items = (Map<String, String>) results.get(0);
+        Map<String, String> numbers = (Map<String, String>) results.get(1);
+        List<ShoppingCart> list = new ArrayList<>();
+        items.forEach((field, item) -> {
+            String number = numbers.get(field);
+            if (number != null) {
+                ShoppingCart shoppingCart = JSON.parseObject(item, ShoppingCart.class);
+                shoppingCart.setUserId(userId);
+                shoppingCart.setNumber(Integer.valueOf(number));
+                list.add(shoppingCart);
+            }
+        });
+        list.sort(Comparator.comparing(ShoppingCart::getCreateTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        return list;
+    }
+
+    /**
+     * 从数据库加载购物车到redis
+     */
+    private List<ShoppingCart> load(Long userId) {
+        List<ShoppingCart> list = shoppingCartMapper.list(ShoppingCart.builder().userId(userId).build());
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(expireMillis()));
+        for (ShoppingCart shoppingCart : list) {
+            Integer number = shoppingCart.getNumber();
+            shoppingCart.setId(null);
+            shoppingCart.setNumber(null);
+            args.add(fieldOf(shoppingCart.getDishId(), shoppingCart.getSetmealId(), shoppingCart.getDishFlavor()));
+            args.add(JSON.toJSONString(shoppingCart));
+            args.add(String.valueOf(number));
+            shoppingCart.setNumber(number);
+        }
+        stringRedisTemplate.execute(LOAD_SCRIPT, keysOf(userId), args.toArray());
+        return list;
+    }
+
+    /**
+     * 在事务中调用时等事务提交后再执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private List<String> keysOf(Long userId) {
+        String prefix = KEY_PREFIX + userId;
+        return Arrays.asList(prefix + ":item", prefix + ":number", prefix + ":loaded", DIRTY_KEY);
+    }
+
+    private String fieldOf(Long dishId, Long setmealId, String dishFlavor) {
+        return dishId != null ? "dish:" + dishId + ":" + (dishFlavor == null ? "" : dishFlavor) : "setmeal:" + setmealId;
+    }
+
+    private long expireMillis() {
+        return TimeUnit.DAYS.toMillis(shoppingCartProperties.getExpireDays());
     }
 }
@@ -1,52 +1,185 @@
 package com.sky.service.impl;
 
 import com.alibaba.fastjson.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.sky.constant.MessageConstant;
 import com.sky.dto.UserLoginDTO;
 import com.sky.entity.User;
 import com.sky.exception.LoginFailedException;
 import com.sky.mapper.UserMapper;
+import com.sky.properties.WeChatLoginProperties;
 import com.sky.properties.WeChatProperties;
+import com.sky.service.BusinessStatsService;
 import com.sky.service.UserService;
+import com.sky.utils.CircuitBreaker;
 import com.sky.utils.HttpClientUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
+@Slf4j
 public class UserServiceImpl implements UserService {
 
     @Autowired
     WeChatProperties weChatProperties;
-    private static final String WX_URL = "https://api.weixin.qq.com/sns/jscode2session";
     @Autowired
     UserMapper userMapper;
+    @Autowired
+    BusinessStatsService businessStatsService;
+    @Autowired
+    WeChatLoginProperties weChatLoginProperties;
+    @Autowired
+    ThreadPoolTaskExecutor weChatLoginExecutor;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    //登录码5分钟内有效且只能使用一次，小程序重复提交同一个登录码时直接返回上次换到的openid
+    private Cache<String, String> openidCache;
+
+    //按openid缓存用户id，id和openid在注册后都不会改变，其余字段可能修改，不缓存
+    private Cache<String, Long> userIdCache;
+
+    private CircuitBreaker circuitBreaker;
+
+    //等待微信登录接口超时后结束登录请求
+    private final ScheduledExecutorService timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "wechat-login-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        openidCache = Caffeine.newBuilder()
+                .maximumSize(weChatLoginProperties.getOpenidCacheSize())
+                .expireAfterWrite(weChatLoginProperties.getOpenidCacheMinutes(), TimeUnit.MINUTES)
+                .build();
+        userIdCache = Caffeine.newBuilder()
+                .maximumSize(weChatLoginProperties.getUserCacheSize())
+                .expireAfterWrite(weChatLoginProperties.getUserCacheMinutes(), TimeUnit.MINUTES)
+                .build();
+        circuitBreaker = new CircuitBreaker(weChatLoginProperties.getFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(weChatLoginProperties.getOpenSeconds()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timeoutExecutor.shutdownNow();
+    }
 
     @Override
-    public User login(UserLoginDTO userLD) {
-        String openid = getOpenid(userLD.getCode());
-        //判断openid是否为空，如果为空表示登录失败，抛出业务异常
-        if(openid == null){
-            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
-        }
+    public CompletableFuture<User> login(UserLoginDTO userLD) {
+        String code = userLD.getCode();
+        String cachedOpenid = code == null ? null : openidCache.getIfPresent(code);
+        CompletableFuture<String> openidFuture = cachedOpenid != null
+                ? CompletableFuture.completedFuture(cachedOpenid)
+                : getOpenidAsync(code);
+        //查询和注册用户也在登录线程池中执行，缓存命中时不占用请求线程
+        return openidFuture.thenCompose(openid -> {
+            try {
+                return CompletableFuture.supplyAsync(() -> getOrRegister(openid), weChatLoginExecutor);
+            } catch (TaskRejectedException e) {
+                return failed(new LoginFailedException(MessageConstant.LOGIN_BUSY));
+            }
+        });
+    }
 
+    /**
+     * 查询openid对应的用户，新用户自动完成注册，只返回用户id和openid
+     */
+    private User getOrRegister(String openid) {
+        Long userId = userIdCache.getIfPresent(openid);
+        if (userId != null) {
+            return User.builder().id(userId).openid(openid).build();
+        }
         //判断当前用户是否为新用户
         User user = userMapper.getByOpenid(openid);
 
-        //如果是新用户，自动完成注册
-        if(user == null){
-            user = User.builder()
+        //如果是新用户，自动完成注册，同一用户并发首次登录时只有一个请求插入成功
+        if (user == null) {
+            User newUser = User.builder()
                     .openid(openid)
                     .createTime(LocalDateTime.now())
                     .build();
-            userMapper.insert(user);//后绪步骤实现
+            //插入用户和累加新增用户数在同一个事务中提交，重建汇总数据时不会重复统计
+            Boolean inserted = transactionTemplate.execute(status -> {
+                if (userMapper.insertIgnore(newUser) == 0) {
+                    return false;
+                }
+                businessStatsService.userRegistered(newUser);
+                return true;
+            });
+            if (Boolean.TRUE.equals(inserted)) {
+                user = newUser;
+            } else {
+                user = userMapper.getByOpenid(openid);
+            }
         }
+        userIdCache.put(openid, user.getId());
+        return User.builder().id(user.getId()).openid(openid).build();
+    }
 
-        //返回这个用户对象
-        return user;
+    /**
+     * 在登录线程池中用登录码换取openid，超时、接口异常和熔断都按登录失败处理
+     */
+    private CompletableFuture<String> getOpenidAsync(String code) {
+        if (code == null || code.isEmpty()) {
+            return failed(new LoginFailedException(MessageConstant.LOGIN_FAILED));
+        }
+        if (!circuitBreaker.allowRequest()) {
+            return failed(new LoginFailedException(MessageConstant.LOGIN_BUSY));
+        }
+        CompletableFuture<String> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> getOpenid(code), weChatLoginExecutor);
+        } catch (TaskRejectedException e) {
+            // 排队已满，请求没有发出，不计入熔断
+            circuitBreaker.recordIgnored();
+            return failed(new LoginFailedException(MessageConstant.LOGIN_BUSY));
+        }
+        //超时后请求先按失败返回，执行中的http调用也设置了同样的超时，不会一直占用登录线程
+        ScheduledFuture<?> timeout = timeoutExecutor.schedule(() -> future.completeExceptionally(new TimeoutException()),
+                weChatLoginProperties.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        return future
+                .whenComplete((openid, ex) -> timeout.cancel(false))
+                .handle((openid, ex) -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause == null) {
+                        circuitBreaker.recordSuccess();
+                    } else if (!(cause instanceof LoginFailedException)) {
+                        circuitBreaker.recordFailure();
+                        if (cause instanceof TimeoutException) {
+                            log.warn("调用微信登录接口超时，熔断器状态：{}", circuitBreaker.getState());
+                        } else {
+                            log.warn("调用微信登录接口失败，熔断器状态：{}", circuitBreaker.getState(), cause);
+                        }
+                        throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+                    } else {
+                        // 登录码无效，微信接口本身正常
+                        circuitBreaker.recordSuccess();
+                        throw (LoginFailedException) cause;
+                    }
+                    openidCache.put(code, openid);
+                    return openid;
+                });
     }
 
     private String getOpenid(String code) {
@@ -55,8 +188,28 @@ public class UserServiceImpl implements UserService {
         map.put("secret", weChatProperties.getSecret());
         map.put("js_code", code);
         map.put("grant_type", "authorization_code");
-        String json = HttpClientUtil.doGet(WX_URL, map);
+        String json = HttpClientUtil.doGet(weChatLoginProperties.getUrl(), map, (int) weChatLoginProperties.getTimeoutMillis());
+        if (json == null || json.isEmpty()) {
+            // 请求失败或响应状态不是200
+            throw new IllegalStateException("微信登录接口没有返回数据");
+        }
         JSONObject jsonObject = JSONObject.parseObject(json);
-        return jsonObject.getString("openid");
+        String openid = jsonObject.getString("openid");
+        if (openid == null && Integer.valueOf(-1).equals(jsonObject.getInteger("errcode"))) {
+            // 微信系统繁忙，按接口异常处理
+            throw new IllegalStateException("微信登录接口繁忙");
+        }
+        //判断openid是否为空，如果为空表示登录失败，抛出业务异常
+        if (openid == null) {
+            log.info("微信登录失败：{}", jsonObject.getString("errmsg"));
+            throw new LoginFailedException(MessageConstant.LOGIN_FAILED);
+        }
+        return openid;
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
     }
 }
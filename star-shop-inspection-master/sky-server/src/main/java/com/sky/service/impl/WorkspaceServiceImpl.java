@@ -1,11 +1,12 @@
 package com.sky.service.impl;
 
-import com.sky.constant.StatusConstant;
+import com.sky.dto.StatusCountDTO;
+import com.sky.entity.DailyBusinessStats;
 import com.sky.entity.Orders;
-import com.sky.mapper.DishMapper;
+import com.sky.mapper.DailyBusinessStatsMapper;
 import com.sky.mapper.OrderMapper;
-import com.sky.mapper.SetmealMapper;
-import com.sky.mapper.UserMapper;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.CatalogStatsService;
 import com.sky.service.WorkspaceService;
 import com.sky.vo.BusinessDataVO;
 import com.sky.vo.DishOverViewVO;
@@ -14,10 +15,16 @@ import com.sky.vo.SetmealOverViewVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @Slf4j
@@ -26,138 +33,146 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     @Autowired
     private OrderMapper orderMapper;
     @Autowired
-    private UserMapper userMapper;
+    private DailyBusinessStatsMapper dailyBusinessStatsMapper;
     @Autowired
-    private DishMapper dishMapper;
+    private BusinessStatsService businessStatsService;
     @Autowired
-    private SetmealMapper setmealMapper;
+    private CatalogStatsService catalogStatsService;
+
+    //订单概览缓存时间，缓存失效前最多读到这么久之前的数据
+    private static final long ORDER_OVERVIEW_TTL_MILLIS = 5000;
+
+    private volatile OrderOverViewCache orderOverViewCache;
+
+    //订单状态每变化一次加一，版本号不一致的缓存视为失效
+    private final AtomicLong orderOverViewVersion = new AtomicLong();
+
+    private final Object orderOverViewLock = new Object();
 
     /**
-     * 根据时间段统计营业数据
+     * 根据时间段统计营业数据，按整天统计
      * @param begin
      * @param end
      * @return
      */
     public BusinessDataVO getBusinessData(LocalDateTime begin, LocalDateTime end) {
-        /**
-         * 营业额：当日已完成订单的总金额
-         * 有效订单：当日已完成订单的数量
-         * 订单完成率：有效订单数 / 总订单数
-         * 平均客单价：营业额 / 有效订单数
-         * 新增用户：当日新增用户的数量
-         */
-
-        Map map = new HashMap();
-        map.put("begin",begin);
-        map.put("end",end);
-
-        //查询总订单数
-        Integer totalOrderCount = orderMapper.countByMap(map);
-
-        map.put("status", Orders.COMPLETED);
-        //营业额
-        Double turnover = orderMapper.sumByMap(map);
-        turnover = turnover == null? 0.0 : turnover;
-
-        //有效订单数
-        Integer validOrderCount = orderMapper.countByMap(map);
-
-        Double unitPrice = 0.0;
-
-        Double orderCompletionRate = 0.0;
-        if(totalOrderCount != 0 && validOrderCount != 0){
-            //订单完成率
-            orderCompletionRate = validOrderCount.doubleValue() / totalOrderCount;
-            //平均客单价
-            unitPrice = turnover / validOrderCount;
-        }
-
-        //新增用户数
-        Integer newUsers = userMapper.countByMap(map);
-
-        return BusinessDataVO.builder()
-                .turnover(turnover)
-                .validOrderCount(validOrderCount)
-                .orderCompletionRate(orderCompletionRate)
-                .unitPrice(unitPrice)
-                .newUsers(newUsers)
-                .build();
+        //营业数据从每日汇总表读取，按天合计，不再扫描订单表和用户表
+        List<DailyBusinessStats> statsList = dailyBusinessStatsMapper.listByDate(begin.toLocalDate(), end.toLocalDate());
+        return businessStatsService.summarize(statsList);
     }
 
 
     /**
-     * 查询订单管理数据
+     * 查询订单管理数据，管理端会频繁轮询，结果在内存中缓存一小段时间
      *
      * @return
      */
     public OrderOverViewVO getOrderOverView() {
-        Map map = new HashMap();
-        map.put("begin", LocalDateTime.now().with(LocalTime.MIN));
-        map.put("status", Orders.TO_BE_CONFIRMED);
-
-        //待接单
-        Integer waitingOrders = orderMapper.countByMap(map);
-
-        //待派送
-        map.put("status", Orders.CONFIRMED);
-        Integer deliveredOrders = orderMapper.countByMap(map);
-
-        //已完成
-        map.put("status", Orders.COMPLETED);
-        Integer completedOrders = orderMapper.countByMap(map);
+        OrderOverViewCache cache = orderOverViewCache;
+        if (isValid(cache)) {
+            return cache.orderOverView;
+        }
+        //多个请求同时发现缓存失效时只查询一次数据库
+        synchronized (orderOverViewLock) {
+            cache = orderOverViewCache;
+            if (isValid(cache)) {
+                return cache.orderOverView;
+            }
+            //先记下版本号再查询，查询期间订单状态发生变化时，这次的结果不会被当作有效缓存
+            long version = orderOverViewVersion.get();
+            LocalDate today = LocalDate.now();
+            OrderOverViewVO orderOverView = loadOrderOverView(today);
+            orderOverViewCache = new OrderOverViewCache(orderOverView, today,
+                    System.currentTimeMillis() + ORDER_OVERVIEW_TTL_MILLIS, version);
+            return orderOverView;
+        }
+    }
 
-        //已取消
-        map.put("status", Orders.CANCELLED);
-        Integer cancelledOrders = orderMapper.countByMap(map);
+    /**
+     * 订单状态发生变化，使订单概览缓存失效
+     * 在事务中调用时等事务提交后再失效，否则提交前重新查询的旧数据会被当作有效缓存
+     */
+    public void invalidateOrderOverView() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    orderOverViewVersion.incrementAndGet();
+                }
+            });
+        } else {
+            orderOverViewVersion.incrementAndGet();
+        }
+    }
 
-        //全部订单
-        map.put("status", null);
-        Integer allOrders = orderMapper.countByMap(map);
+    /**
+     * 一次分组查询统计当天各状态的订单数
+     * @param today
+     * @return
+     */
+    private OrderOverViewVO loadOrderOverView(LocalDate today) {
+        List<StatusCountDTO> statusCountList = orderMapper.countByStatus(LocalDateTime.of(today, LocalTime.MIN));
+        Map<Integer, Integer> statusCountMap = new HashMap<>();
+        int allOrders = 0;
+        for (StatusCountDTO statusCount : statusCountList) {
+            statusCountMap.put(statusCount.getStatus(), statusCount.getCount());
+            allOrders += statusCount.getCount();
+        }
 
         return OrderOverViewVO.builder()
-                .waitingOrders(waitingOrders)
-                .deliveredOrders(deliveredOrders)
-                .completedOrders(completedOrders)
-                .cancelledOrders(cancelledOrders)
+                //待接单
+                .waitingOrders(statusCountMap.getOrDefault(Orders.TO_BE_CONFIRMED, 0))
+                //待派送
+                .deliveredOrders(statusCountMap.getOrDefault(Orders.CONFIRMED, 0))
+                //已完成
+                .completedOrders(statusCountMap.getOrDefault(Orders.COMPLETED, 0))
+                //已取消
+                .cancelledOrders(statusCountMap.getOrDefault(Orders.CANCELLED, 0))
+                //全部订单
                 .allOrders(allOrders)
                 .build();
     }
 
+    private boolean isValid(OrderOverViewCache cache) {
+        return cache != null
+                && cache.version == orderOverViewVersion.get()
+                && cache.expireTime > System.currentTimeMillis()
+                && cache.date.equals(LocalDate.now());
+    }
+
+    /**
+     * 订单概览缓存，创建后不再修改
+     */
+    private static class OrderOverViewCache {
+        private final OrderOverViewVO orderOverView;
+        //统计的日期，跨天后缓存失效
+        private final LocalDate date;
+        private final long expireTime;
+        private final long version;
+
+        private OrderOverViewCache(OrderOverViewVO orderOverView, LocalDate date, long expireTime, long version) {
+            this.orderOverView = orderOverView;
+            this.date = date;
+            this.expireTime = expireTime;
+            this.version = version;
+        }
+    }
+
     /**
-     * 查询菜品总览
+     * 查询菜品总览，数量由内存计数维护，不再查询数据库
      *
      * @return
      */
     public DishOverViewVO getDishOverView() {
-        Map map = new HashMap();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = dishMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = dishMapper.countByMap(map);
-
-        return DishOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+        return catalogStatsService.getDishOverView();
     }
 
     /**
-     * 查询套餐总览
+     * 查询套餐总览，数量由内存计数维护，不再查询数据库
      *
      * @return
      */
     public SetmealOverViewVO getSetmealOverView() {
-        Map map = new HashMap();
-        map.put("status", StatusConstant.ENABLE);
-        Integer sold = setmealMapper.countByMap(map);
-
-        map.put("status", StatusConstant.DISABLE);
-        Integer discontinued = setmealMapper.countByMap(map);
-
-        return SetmealOverViewVO.builder()
-                .sold(sold)
-                .discontinued(discontinued)
-                .build();
+        return catalogStatsService.getSetmealOverView();
     }
 }
@@ -0,0 +1,33 @@
+package com.sky.task;
+
+import com.sky.service.BusinessStatsService;
+import com.sky.service.JobCoordinatorService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+@Component
+@Slf4j
+public class BusinessStatsTask {
+
+    @Autowired
+    private BusinessStatsService businessStatsService;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+
+    /**
+     * 每天凌晨按原始数据校正前两天的汇总数据
+     * 前一天的派送中订单可能在零点后才自动完成，所以多校正一天
+     */
+    @Scheduled(cron = "0 0 2 * * ?")
+    public void reconcileBusinessStats() {
+        jobCoordinatorService.runExclusive("reconcileBusinessStats", () -> {
+            log.info("定时校正每日营业数据");
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            businessStatsService.rebuild(yesterday.minusDays(1), yesterday);
+        });
+    }
+}
@@ -0,0 +1,25 @@
+package com.sky.task;
+
+import com.sky.service.CatalogStatsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class CatalogStatsTask {
+
+    @Autowired
+    private CatalogStatsService catalogStatsService;
+
+    /**
+     * 每10分钟按数据库校正一次菜品和套餐的起售停售数量
+     * 其他节点的修改通过计数变化通知同步，通知丢失时靠这里兜底
+     */
+    @Scheduled(cron = "0 */10 * * * ?")
+    public void resyncCatalogStats() {
+        log.info("定时校正菜品和套餐计数");
+        catalogStatsService.resync();
+    }
+}
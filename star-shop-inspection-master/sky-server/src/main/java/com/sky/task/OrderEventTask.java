@@ -0,0 +1,37 @@
+package com.sky.task;
+
+import com.sky.service.JobCoordinatorService;
+import com.sky.service.OrderEventService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class OrderEventTask {
+
+    @Autowired
+    private OrderEventService orderEventService;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+
+    /**
+     * 每5秒补发一次订单事件，覆盖提交后没能立即分发、分发失败和节点重启的情况
+     */
+    @Scheduled(cron = "0/5 * * * * ?")
+    public void dispatchOrderEvents() {
+        orderEventService.dispatchAsync();
+    }
+
+    /**
+     * 每天凌晨删除过期的已分发事件
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void cleanOrderEvents() {
+        jobCoordinatorService.runExclusive("cleanOrderEvents", () -> {
+            log.info("定时清理已分发的订单事件");
+            orderEventService.cleanDispatched();
+        });
+    }
+}
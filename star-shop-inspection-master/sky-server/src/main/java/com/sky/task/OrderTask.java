@@ -1,46 +1,55 @@
 package com.sky.task;
 
-import com.sky.constant.MessageConstant;
-import com.sky.entity.Orders;
-import com.sky.mapper.OrderMapper;
+import com.sky.service.JobCoordinatorService;
+import com.sky.service.OrderAutoCompleteService;
+import com.sky.service.OrderTimeoutService;
 import lombok.extern.slf4j.Slf4j;
-import org.aspectj.weaver.ast.Or;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.List;
-
 @Component
 @Slf4j
 public class OrderTask {
 
     @Autowired
-    private OrderMapper orderMapper;
+    private OrderTimeoutService orderTimeoutService;
+    @Autowired
+    private OrderAutoCompleteService orderAutoCompleteService;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
 
-    @Scheduled(cron = "0 * * * * ?")
-    public void processTimeoutOrder() {
-        log.info("定时处理超时订单");
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-15);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTime(Orders.PENDING_PAYMENT, time);
-        for (Orders orders : ordersList) {
-            orders.setStatus(Orders.CANCELLED);
-            orders.setCancelReason("订单超时,自动取消!");
-            orders.setCancelTime(LocalDateTime.now());
-            orderMapper.update(orders);
+    /**
+     * 每秒取消一次到期的待支付订单，到期时间由下单时登记在redis中
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void processExpiredOrder() {
+        try {
+            orderTimeoutService.cancelExpired();
+        } catch (Exception e) {
+            log.warn("取消到期订单失败", e);
         }
     }
 
-    //
+    /**
+     * 每10分钟全量检查一次超时订单，兜底处理没能登记到redis的订单
+     */
+    @Scheduled(cron = "0 */10 * * * ?")
+    public void processTimeoutOrder() {
+        jobCoordinatorService.runExclusive("processTimeoutOrder", () -> {
+            log.info("定时处理超时订单");
+            orderTimeoutService.cancelOverdue();
+        });
+    }
+
+    /**
+     * 每分钟把超时仍在派送中的订单分批改为已完成
+     */
     @Scheduled(cron = "0 * * * * ?")
     public void processDeliveryOrderTask() {
-        log.info("定时处理一直处于派送中的订单");
-        LocalDateTime time = LocalDateTime.now().plusMinutes(-60);
-        List<Orders> ordersList = orderMapper.getByStatusAndOrderTime(Orders.DELIVERY_IN_PROGRESS, time);
-        for (Orders orders : ordersList) {
-            orders.setStatus(Orders.COMPLETED);
-            orderMapper.update(orders);
-        }
+        jobCoordinatorService.runExclusive("processDeliveryOrder", () -> {
+            log.info("定时处理一直处于派送中的订单");
+            orderAutoCompleteService.run();
+        });
     }
 }
@@ -0,0 +1,24 @@
+package com.sky.task;
+
+import com.sky.service.ReportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class ReportExportTask {
+
+    @Autowired
+    private ReportService reportService;
+
+    /**
+     * 每小时清理一次过期的导出任务和文件
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void cleanExpiredExportJobs() {
+        log.info("定时清理过期的报表导出任务");
+        reportService.cleanExpiredExportJobs();
+    }
+}
@@ -0,0 +1,32 @@
+package com.sky.task;
+
+import com.sky.service.JobCoordinatorService;
+import com.sky.service.ShoppingCartService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+public class ShoppingCartTask {
+
+    @Autowired
+    private ShoppingCartService shoppingCartService;
+    @Autowired
+    private JobCoordinatorService jobCoordinatorService;
+
+    /**
+     * 每5秒把有改动的购物车写回数据库
+     * 同一时间只在一个节点执行，避免两个节点先后读到同一用户的新旧购物车后以旧覆盖新
+     */
+    @Scheduled(cron = "0/5 * * * * ?")
+    public void flushShoppingCart() {
+        jobCoordinatorService.runExclusive("flushShoppingCart", 0, () -> {
+            int flushed = shoppingCartService.flush();
+            if (flushed > 0) {
+                log.info("购物车写回数据库：{}个用户", flushed);
+            }
+        });
+    }
+}
@@ -0,0 +1,223 @@
+package com.sky.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个客户端连接和它的待发送消息队列
+ * 消息入队后立即返回，同一时间只有一条消息在异步发送，发送完成的回调里再发下一条，
+ * 调用方线程不会被接收慢的客户端阻塞
+ * 心跳ping帧也占用同一个发送名额，由心跳线程池发送，不会和消息同时发送
+ */
+@Slf4j
+public class ClientSession {
+
+    private final String sid;
+
+    private final Session session;
+
+    private final int queueCapacity;
+
+    private final boolean closeOnOverflow;
+
+    private final WebSocketMetrics metrics;
+
+    //容器的ping是同步发送的，放到这个线程池中执行
+    private final Executor pingExecutor;
+
+    //订阅的主题
+    private final Set<String> topics = ConcurrentHashMap.newKeySet();
+
+    private final Queue<PendingMessage> queue = new ConcurrentLinkedQueue<>();
+
+    //ConcurrentLinkedQueue的size()需要遍历，单独计数
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    //是否有消息正在发送
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    //心跳从排队到发送完成期间为true，期间不再排新的心跳
+    private final AtomicBoolean pinging = new AtomicBoolean();
+
+    //是否有心跳在等待发送名额
+    private final AtomicBoolean pingPending = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    public ClientSession(String sid, Session session, int queueCapacity, long sendTimeoutMillis,
+                         boolean closeOnOverflow, WebSocketMetrics metrics, Executor pingExecutor) {
+        this.sid = sid;
+        this.session = session;
+        this.queueCapacity = queueCapacity;
+        this.closeOnOverflow = closeOnOverflow;
+        this.metrics = metrics;
+        this.pingExecutor = pingExecutor;
+        session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+        //ping是同步发送的，用同样的超时时间限制等待
+        session.getUserProperties().put("org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT", sendTimeoutMillis);
+    }
+
+    public String getSid() {
+        return sid;
+    }
+
+    public boolean isSession(Session session) {
+        return this.session == session;
+    }
+
+    public Set<String> getTopics() {
+        return Collections.unmodifiableSet(topics);
+    }
+
+    boolean addTopic(String topic) {
+        return topics.add(topic);
+    }
+
+    boolean removeTopic(String topic) {
+        return topics.remove(topic);
+    }
+
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    /**
+     * 消息入队，队列已满时按配置丢弃消息或关闭连接
+     * @param message
+     */
+    public void send(String message) {
+        if (closed) {
+            return;
+        }
+        if (queueSize.incrementAndGet() > queueCapacity) {
+            queueSize.decrementAndGet();
+            metrics.dropped.increment();
+            if (closeOnOverflow) {
+                log.warn("客户端{}接收过慢，待发送消息超过{}条，关闭连接", sid, queueCapacity);
+                metrics.closedSlowSessions.increment();
+                close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "too slow"));
+            }
+            return;
+        }
+        queue.offer(new PendingMessage(message, System.nanoTime()));
+        sendNext();
+    }
+
+    /**
+     * 没有消息在发送时，先发送等待中的心跳，再取出下一条消息异步发送
+     */
+    private void sendNext() {
+        while (!closed && (pingPending.get() || !queue.isEmpty()) && sending.compareAndSet(false, true)) {
+            if (pingPending.compareAndSet(true, false)) {
+                sendPing();
+                return;
+            }
+            PendingMessage pending = queue.poll();
+            if (pending == null) {
+                //其他线程已经取走了消息，释放发送权后重新检查队列
+                sending.set(false);
+                continue;
+            }
+            queueSize.decrementAndGet();
+            try {
+                session.getAsyncRemote().sendText(pending.message, result -> {
+                    if (result.isOK()) {
+                        metrics.recordSend(System.nanoTime() - pending.enqueueTime);
+                    } else {
+                        metrics.failed.increment();
+                        log.warn("向客户端{}发送消息失败，关闭连接", sid, result.getException());
+                        close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "send failed"));
+                    }
+                    sending.set(false);
+                    sendNext();
+                });
+            } catch (Exception e) {
+                metrics.failed.increment();
+                log.warn("向客户端{}发送消息失败，关闭连接", sid, e);
+                sending.set(false);
+                close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "send failed"));
+            }
+            //回调会接着发送下一条，这里只负责启动
+            return;
+        }
+    }
+
+    /**
+     * 发送ping帧作为心跳，客户端会自动回复pong，不需要处理文本消息
+     * 心跳排在正在发送的消息之后，调用后立即返回
+     */
+    public void ping() {
+        if (closed || !pinging.compareAndSet(false, true)) {
+            return;
+        }
+        pingPending.set(true);
+        sendNext();
+    }
+
+    /**
+     * 在心跳线程池中发送ping帧，超过发送超时时间仍未发出时关闭连接
+     * 调用前已经取得发送名额
+     */
+    private void sendPing() {
+        try {
+            pingExecutor.execute(() -> {
+                try {
+                    session.getBasicRemote().sendPing(ByteBuffer.allocate(0));
+                } catch (Exception e) {
+                    metrics.failed.increment();
+                    log.warn("向客户端{}发送心跳失败，关闭连接", sid, e);
+                    close(new CloseReason(CloseReason.CloseCodes.GOING_AWAY, "ping failed"));
+                }
+                pinging.set(false);
+                sending.set(false);
+                sendNext();
+            });
+        } catch (Exception e) {
+            //线程池已关闭，跳过这次心跳
+            log.warn("客户端{}的心跳未能提交", sid, e);
+            pinging.set(false);
+            sending.set(false);
+        }
+    }
+
+    /**
+     * 关闭连接并丢弃未发送的消息
+     * @param reason
+     */
+    public void close(CloseReason reason) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.clear();
+        queueSize.set(0);
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            log.warn("关闭客户端{}的连接失败", sid, e);
+        }
+    }
+
+    private static class PendingMessage {
+        private final String message;
+        //入队时间，用于统计发送耗时
+        private final long enqueueTime;
+
+        private PendingMessage(String message, long enqueueTime) {
+            this.message = message;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+}
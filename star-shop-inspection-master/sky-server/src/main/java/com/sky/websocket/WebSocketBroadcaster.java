@@ -0,0 +1,95 @@
+package com.sky.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.properties.WebSocketProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 集群推送：消息按批发布到redis频道，每个节点（包括发布者自己）收到后推给本节点上订阅了主题的连接
+ * 本节点的连接只通过频道收到消息，不会重复推送
+ * 订单提醒由发件箱的分发线程成批领取后发布，发布失败时事件留在发件箱中等待重试
+ */
+@Component
+@Slf4j
+public class WebSocketBroadcaster implements MessageListener {
+
+    @Autowired
+    private WebSocketServer webSocketServer;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(this,
+                new ChannelTopic(webSocketProperties.getBroadcastChannel()));
+    }
+
+    /**
+     * 立即向所有节点上某个员工的连接推送通知，发布失败时抛出异常
+     * @param empId
+     * @param message
+     */
+    public void publishToEmployee(Long empId, String message) {
+        publishAll(WebSocketServer.TOPIC_EMPLOYEE_PREFIX + empId, Collections.singletonList(message));
+    }
+
+    /**
+     * 立即按批发布同一主题的多条消息，发布失败时抛出异常，由调用方决定是否重试
+     * @param topic
+     * @param messages
+     */
+    public void publishAll(String topic, List<String> messages) {
+        JSONArray batch = new JSONArray();
+        for (String message : messages) {
+            JSONObject item = new JSONObject();
+            item.put("topic", topic);
+            item.put("message", message);
+            batch.add(item);
+            if (batch.size() >= webSocketProperties.getBatchMaxSize()) {
+                stringRedisTemplate.convertAndSend(webSocketProperties.getBroadcastChannel(), batch.toJSONString());
+                batch = new JSONArray();
+            }
+        }
+        if (!batch.isEmpty()) {
+            stringRedisTemplate.convertAndSend(webSocketProperties.getBroadcastChannel(), batch.toJSONString());
+        }
+    }
+
+    /**
+     * 收到频道中的一批消息，推给本节点的连接
+     * @param message
+     * @param pattern
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        deliver(JSON.parseArray(new String(message.getBody(), StandardCharsets.UTF_8)));
+    }
+
+    private void deliver(JSONArray batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            JSONObject item = batch.getJSONObject(i);
+            webSocketServer.sendToTopic(item.getString("topic"), item.getString("message"));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.sky.websocket;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket推送计数，所有连接共用
+ */
+public class WebSocketMetrics {
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder closedSlowSessions = new LongAdder();
+
+    private final LongAdder sendNanos = new LongAdder();
+    private final LongAccumulator maxSendNanos = new LongAccumulator(Long::max, 0);
+
+    /**
+     * 记录一条消息从入队到发送完成的耗时
+     * @param nanos
+     */
+    void recordSend(long nanos) {
+        sent.increment();
+        sendNanos.add(nanos);
+        maxSendNanos.accumulate(nanos);
+    }
+
+    double getAvgSendMillis() {
+        long count = sent.sum();
+        return count == 0 ? 0 : (double) sendNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    double getMaxSendMillis() {
+        return (double) maxSendNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -1,33 +1,119 @@
 package com.sky.websocket;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sky.cache.JwtClaimsCache;
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.WebSocketProperties;
+import com.sky.vo.WebSocketStatsVO;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import javax.websocket.CloseReason;
 import javax.websocket.OnClose;
+import javax.websocket.OnError;
 import javax.websocket.OnMessage;
 import javax.websocket.OnOpen;
 import javax.websocket.Session;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * WebSocket服务
+ * 每个连接由容器创建一个端点对象，会话和配置因此放在静态字段中，由Spring管理的实例负责注入
+ *
+ * 连接按主题订阅消息：
+ * - order：来单提醒和催单，未指定topics参数时默认订阅
+ * - heartbeat：每5秒收到一个ping帧，需要主动订阅
+ * - employee:{id}：发给某个员工的通知（如报表导出结束），连接时携带管理端令牌token后自动订阅，
+ *   通过WebSocketBroadcaster.publishToEmployee推送
+ * 连接后可以发送 {"type":"subscribe","topic":"heartbeat"} 或 unsubscribe 修改订阅
  */
 @Component
 @ServerEndpoint("/ws/{sid}")
+@Slf4j
 public class WebSocketServer {
 
+    public static final String TOPIC_ORDER = "order";
+    public static final String TOPIC_HEARTBEAT = "heartbeat";
+    public static final String TOPIC_EMPLOYEE_PREFIX = "employee:";
+
+    //客户端可以自行订阅的主题，员工主题只能通过令牌订阅
+    private static final List<String> PUBLIC_TOPICS = Arrays.asList(TOPIC_ORDER, TOPIC_HEARTBEAT);
+
     //存放会话对象
-    private static Map<String, Session> sessionMap = new HashMap();
+    private static final Map<String, ClientSession> sessionMap = new ConcurrentHashMap<>();
+
+    //主题和订阅它的会话，推送时只遍历订阅者
+    private static final Map<String, Set<ClientSession>> topicMap = new ConcurrentHashMap<>();
+
+    private static final WebSocketMetrics metrics = new WebSocketMetrics();
+
+    private static WebSocketProperties webSocketProperties = new WebSocketProperties();
+
+    private static JwtClaimsCache jwtClaimsCache;
+
+    //发送心跳ping帧的线程池，按配置的线程数重建
+    private static volatile ExecutorService pingExecutor = newPingExecutor(webSocketProperties.getHeartbeatThreads());
+
+    @Autowired
+    public void setWebSocketProperties(WebSocketProperties webSocketProperties) {
+        WebSocketServer.webSocketProperties = webSocketProperties;
+        ExecutorService old = pingExecutor;
+        pingExecutor = newPingExecutor(webSocketProperties.getHeartbeatThreads());
+        old.shutdown();
+    }
+
+    @Autowired
+    public void setJwtClaimsCache(JwtClaimsCache jwtClaimsCache) {
+        WebSocketServer.jwtClaimsCache = jwtClaimsCache;
+    }
 
     /**
      * 连接建立成功调用的方法
      */
     @OnOpen
     public void onOpen(Session session, @PathParam("sid") String sid) {
-        System.out.println("客户端：" + sid + "建立连接");
-        sessionMap.put(sid, session);
+        log.info("客户端：{}建立连接", sid);
+        ClientSession clientSession = new ClientSession(sid, session,
+                webSocketProperties.getQueueCapacity(),
+                webSocketProperties.getSendTimeoutMillis(),
+                webSocketProperties.isCloseOnOverflow(),
+                metrics,
+                pingExecutor);
+        ClientSession old = sessionMap.put(sid, clientSession);
+        if (old != null) {
+            //同一个sid重复连接，关闭旧连接
+            discard(old, new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "replaced"));
+        }
+
+        Map<String, List<String>> params = session.getRequestParameterMap();
+        List<String> topics = params.getOrDefault("topics", Collections.singletonList(TOPIC_ORDER));
+        for (String param : topics) {
+            for (String topic : param.split(",")) {
+                if (PUBLIC_TOPICS.contains(topic.trim())) {
+                    subscribe(clientSession, topic.trim());
+                }
+            }
+        }
+
+        List<String> tokens = params.get("token");
+        if (tokens != null && !tokens.isEmpty()) {
+            Long empId = parseEmpId(tokens.get(0));
+            if (empId != null) {
+                subscribe(clientSession, TOPIC_EMPLOYEE_PREFIX + empId);
+            }
+        }
+        log.info("客户端：{}订阅主题：{}", sid, clientSession.getTopics());
     }
 
     /**
@@ -37,7 +123,26 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, @PathParam("sid") String sid) {
-        System.out.println("收到来自客户端：" + sid + "的信息:" + message);
+        log.info("收到来自客户端：{}的信息:{}", sid, message);
+        ClientSession clientSession = sessionMap.get(sid);
+        if (clientSession == null) {
+            return;
+        }
+        JSONObject json;
+        try {
+            json = JSON.parseObject(message);
+        } catch (Exception e) {
+            return;
+        }
+        String topic = json == null ? null : json.getString("topic");
+        if (topic == null || !PUBLIC_TOPICS.contains(topic)) {
+            return;
+        }
+        if ("subscribe".equals(json.getString("type"))) {
+            subscribe(clientSession, topic);
+        } else if ("unsubscribe".equals(json.getString("type"))) {
+            unsubscribe(clientSession, topic);
+        }
     }
 
     /**
@@ -46,26 +151,148 @@ public class WebSocketServer {
      * @param sid
      */
     @OnClose
-    public void onClose(@PathParam("sid") String sid) {
-        System.out.println("连接断开:" + sid);
-        sessionMap.remove(sid);
+    public void onClose(Session session, @PathParam("sid") String sid) {
+        log.info("连接断开:{}", sid);
+        remove(sid, session);
+    }
+
+    /**
+     * 连接出错调用的方法
+     *
+     * @param sid
+     */
+    @OnError
+    public void onError(Session session, @PathParam("sid") String sid, Throwable error) {
+        log.warn("连接出错:{}", sid, error);
+        remove(sid, session);
     }
 
     /**
-     * 群发
+     * 向本节点上订阅了主题的客户端推送消息，消息放入各连接的发送队列后立即返回
+     * 业务代码应通过WebSocketBroadcaster推送，才能送达其他节点上的连接
      *
+     * @param topic
      * @param message
      */
-    public void sendToAllClient(String message) {
-        Collection<Session> sessions = sessionMap.values();
-        for (Session session : sessions) {
-            try {
-                //服务器向客户端发送消息
-                session.getBasicRemote().sendText(message);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public void sendToTopic(String topic, String message) {
+        Set<ClientSession> subscribers = topicMap.get(topic);
+        if (subscribers == null) {
+            return;
+        }
+        for (ClientSession clientSession : subscribers) {
+            clientSession.send(message);
+        }
+    }
+
+    /**
+     * 向订阅了心跳的客户端发送ping帧，ping排入各连接的发送顺序后立即返回，
+     * 接收慢的客户端不会拖慢其他连接的心跳和定时任务线程
+     */
+    public void sendHeartbeat() {
+        Set<ClientSession> subscribers = topicMap.get(TOPIC_HEARTBEAT);
+        if (subscribers == null) {
+            return;
+        }
+        for (ClientSession clientSession : subscribers) {
+            clientSession.ping();
+        }
+    }
+
+    /**
+     * 推送统计
+     * @return
+     */
+    public WebSocketStatsVO getStats() {
+        int queued = 0;
+        int maxQueued = 0;
+        for (ClientSession clientSession : sessionMap.values()) {
+            int size = clientSession.getQueueSize();
+            queued += size;
+            maxQueued = Math.max(maxQueued, size);
+        }
+        return WebSocketStatsVO.builder()
+                .sessions(sessionMap.size())
+                .queuedMessages(queued)
+                .maxQueuedMessages(maxQueued)
+                .sentMessages(metrics.sent.sum())
+                .failedMessages(metrics.failed.sum())
+                .droppedMessages(metrics.dropped.sum())
+                .closedSlowSessions(metrics.closedSlowSessions.sum())
+                .avgSendMillis(metrics.getAvgSendMillis())
+                .maxSendMillis(metrics.getMaxSendMillis())
+                .build();
+    }
+
+    private void subscribe(ClientSession clientSession, String topic) {
+        if (clientSession.addTopic(topic)) {
+            //在compute中加入，避免和取消订阅时删除空集合相互覆盖
+            topicMap.compute(topic, (key, subscribers) -> {
+                if (subscribers == null) {
+                    subscribers = ConcurrentHashMap.newKeySet();
+                }
+                subscribers.add(clientSession);
+                return subscribers;
+            });
+        }
+    }
+
+    private void unsubscribe(ClientSession clientSession, String topic) {
+        if (clientSession.removeTopic(topic)) {
+            topicMap.computeIfPresent(topic, (key, subscribers) -> {
+                subscribers.remove(clientSession);
+                return subscribers.isEmpty() ? null : subscribers;
+            });
+        }
+    }
+
+    private static ExecutorService newPingExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "websocket-ping");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 解析管理端令牌中的员工id，令牌无效时返回null
+     * @param token
+     * @return
+     */
+    private Long parseEmpId(String token) {
+        if (jwtClaimsCache == null) {
+            return null;
+        }
+        try {
+            Claims claims = jwtClaimsCache.parseAdmin(token);
+            return Long.valueOf(claims.get(JwtClaimsConstant.EMP_ID).toString());
+        } catch (Exception e) {
+            log.warn("WebSocket连接携带的令牌无效");
+            return null;
+        }
+    }
+
+    /**
+     * 只移除当前会话，避免同一个sid重连后把新连接移除
+     * @param sid
+     * @param session
+     */
+    private void remove(String sid, Session session) {
+        ClientSession clientSession = sessionMap.get(sid);
+        if (clientSession != null && clientSession.isSession(session) && sessionMap.remove(sid, clientSession)) {
+            discard(clientSession, new CloseReason(CloseReason.CloseCodes.NORMAL_CLOSURE, "closed"));
+        }
+    }
+
+    /**
+     * 取消会话的所有订阅并关闭连接
+     * @param clientSession
+     * @param reason
+     */
+    private void discard(ClientSession clientSession, CloseReason reason) {
+        for (String topic : clientSession.getTopics()) {
+            unsubscribe(clientSession, topic);
         }
+        clientSession.close(reason);
     }
 
 }
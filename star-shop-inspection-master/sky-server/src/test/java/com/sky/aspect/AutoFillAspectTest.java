@@ -0,0 +1,116 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.context.BaseContext;
+import com.sky.entity.Category;
+import com.sky.enumeration.OperationType;
+import org.aspectj.lang.JoinPoint;
+import org.aspectj.lang.Signature;
+import org.aspectj.lang.reflect.SourceLocation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 公共字段填充：缓存的MethodHandle按操作类型填充字段，耗时对比见AutoFillBenchmark
+ */
+class AutoFillAspectTest {
+
+    private final AutoFillAspect aspect = new AutoFillAspect();
+
+    @BeforeEach
+    void setUp() {
+        BaseContext.setCurrentId(42L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        BaseContext.removeCurrentId();
+    }
+
+    @Test
+    void fillsCommonFields() throws Throwable {
+        Category insert = new Category();
+        aspect.autoFill(joinPoint(insert), autoFill("insert"));
+        assertEquals(42L, insert.getCreateUser());
+        assertEquals(42L, insert.getUpdateUser());
+        assertNotNull(insert.getCreateTime());
+        assertEquals(insert.getCreateTime(), insert.getUpdateTime());
+
+        Category update = new Category();
+        aspect.autoFill(joinPoint(update), autoFill("update"));
+        assertEquals(42L, update.getUpdateUser());
+        assertNotNull(update.getUpdateTime());
+        assertNull(update.getCreateUser());
+        assertNull(update.getCreateTime());
+    }
+
+    private static AutoFill autoFill(String method) throws NoSuchMethodException {
+        return AutoFillAspectTest.class.getDeclaredMethod(method, Category.class).getAnnotation(AutoFill.class);
+    }
+
+    @AutoFill(OperationType.INSERT)
+    private static void insert(Category category) {
+    }
+
+    @AutoFill(OperationType.UPDATE)
+    private static void update(Category category) {
+    }
+
+    /**
+     * 切面只用到参数，其余方法不需要实现
+     */
+    static JoinPoint joinPoint(Object arg) {
+        Object[] args = {arg};
+        return new JoinPoint() {
+            @Override
+            public String toShortString() {
+                return null;
+            }
+
+            @Override
+            public String toLongString() {
+                return null;
+            }
+
+            @Override
+            public Object getThis() {
+                return null;
+            }
+
+            @Override
+            public Object getTarget() {
+                return null;
+            }
+
+            @Override
+            public Object[] getArgs() {
+                return args;
+            }
+
+            @Override
+            public Signature getSignature() {
+                return null;
+            }
+
+            @Override
+            public SourceLocation getSourceLocation() {
+                return null;
+            }
+
+            @Override
+            public String getKind() {
+                return null;
+            }
+
+            @Override
+            public StaticPart getStaticPart() {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,82 @@
+package com.sky.aspect;
+
+import com.sky.annotation.AutoFill;
+import com.sky.constant.AutoFillConstant;
+import com.sky.context.BaseContext;
+import com.sky.entity.Category;
+import com.sky.enumeration.OperationType;
+import org.aspectj.lang.JoinPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 公共字段填充：每次反射查找setter与缓存的MethodHandle的耗时对比
+ * 运行：mvn -P benchmark -pl sky-server -am test -Dbenchmark=AutoFillBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoFillBenchmark {
+
+    private final AutoFillAspect aspect = new AutoFillAspect();
+    private Method insertMethod;
+    private AutoFill autoFill;
+    private Category category;
+    private JoinPoint joinPoint;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        BaseContext.setCurrentId(42L);
+        insertMethod = AutoFillBenchmark.class.getDeclaredMethod("insert", Category.class);
+        autoFill = insertMethod.getAnnotation(AutoFill.class);
+        category = new Category();
+        joinPoint = AutoFillAspectTest.joinPoint(category);
+    }
+
+    /**
+     * 改为缓存MethodHandle之前的实现：每次读取注解、查找并反射调用setter
+     */
+    @Benchmark
+    public Category reflectiveLookup() throws Exception {
+        OperationType type = insertMethod.getAnnotation(AutoFill.class).value();
+        LocalDateTime now = LocalDateTime.now();
+        Long empId = BaseContext.getCurrentId();
+        Class<?> clazz = category.getClass();
+        Method setUpdateUser = clazz.getMethod(AutoFillConstant.SET_UPDATE_USER, Long.class);
+        Method setUpdateTime = clazz.getMethod(AutoFillConstant.SET_UPDATE_TIME, LocalDateTime.class);
+        setUpdateUser.invoke(category, empId);
+        setUpdateTime.invoke(category, now);
+        if (type == OperationType.INSERT) {
+            Method setCreateUser = clazz.getMethod(AutoFillConstant.SET_CREATE_USER, Long.class);
+            Method setCreateTime = clazz.getMethod(AutoFillConstant.SET_CREATE_TIME, LocalDateTime.class);
+            setCreateTime.invoke(category, now);
+            setCreateUser.invoke(category, empId);
+        }
+        return category;
+    }
+
+    @Benchmark
+    public Category cachedMethodHandles() throws Throwable {
+        aspect.autoFill(joinPoint, autoFill);
+        return category;
+    }
+
+    @AutoFill(OperationType.INSERT)
+    private static void insert(Category category) {
+    }
+}
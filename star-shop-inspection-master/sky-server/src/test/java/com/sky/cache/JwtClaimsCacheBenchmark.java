@@ -0,0 +1,91 @@
+package com.sky.cache;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个请求校验令牌的开销：每次调用parseJWT、复用解析器与缓存校验结果的对比
+ * 请求随机使用一批在线用户的令牌，模拟同一个令牌在有效期内被反复使用
+ * 运行：mvn -P benchmark -pl sky-server -am test -Dbenchmark=JwtClaimsCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtClaimsCacheBenchmark {
+
+    private static final String ADMIN_KEY = "itcast";
+    private static final long TTL = 7200000;
+
+    //同时在线的用户数，每个用户一个令牌
+    @Param({"100", "5000"})
+    public int users;
+
+    private String[] tokens;
+    private JwtParser parser;
+    private JwtClaimsCache jwtClaimsCache;
+
+    @Setup
+    public void setUp() {
+        tokens = new String[users];
+        for (int i = 0; i < users; i++) {
+            Map<String, Object> claims = new HashMap<>();
+            claims.put(JwtClaimsConstant.EMP_ID, (long) i);
+            tokens[i] = JwtUtil.createJWT(ADMIN_KEY, TTL, claims);
+        }
+        parser = JwtUtil.createParser(ADMIN_KEY);
+
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setAdminSecretKey(ADMIN_KEY);
+        jwtProperties.setAdminTtl(TTL);
+        jwtProperties.setUserSecretKey("itheima");
+        jwtProperties.setUserTtl(TTL);
+        jwtClaimsCache = new JwtClaimsCache();
+        ReflectionTestUtils.setField(jwtClaimsCache, "jwtProperties", jwtProperties);
+        jwtClaimsCache.init();
+    }
+
+    private String nextToken() {
+        return tokens[ThreadLocalRandom.current().nextInt(tokens.length)];
+    }
+
+    /**
+     * 加缓存之前的实现：每个请求新建解析器并校验签名
+     */
+    @Benchmark
+    public Claims parseJwt() {
+        return JwtUtil.parseJWT(ADMIN_KEY, nextToken());
+    }
+
+    @Benchmark
+    public Claims prebuiltParser() {
+        return parser.parseClaimsJws(nextToken()).getBody();
+    }
+
+    @Benchmark
+    public Claims claimsCache() {
+        return jwtClaimsCache.parseAdmin(nextToken());
+    }
+}
@@ -0,0 +1,80 @@
+package com.sky.cache;
+
+import com.sky.constant.JwtClaimsConstant;
+import com.sky.properties.JwtProperties;
+import com.sky.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 令牌校验缓存：返回与parseJWT相同的载荷，无效令牌不命中缓存，耗时对比见JwtClaimsCacheBenchmark
+ */
+class JwtClaimsCacheTest {
+
+    private static final String ADMIN_KEY = "itcast";
+    private static final String USER_KEY = "itheima";
+    private static final long TTL = 7200000;
+
+    private JwtClaimsCache jwtClaimsCache;
+
+    @BeforeEach
+    void setUp() {
+        JwtProperties jwtProperties = new JwtProperties();
+        jwtProperties.setAdminSecretKey(ADMIN_KEY);
+        jwtProperties.setAdminTtl(TTL);
+        jwtProperties.setUserSecretKey(USER_KEY);
+        jwtProperties.setUserTtl(TTL);
+        jwtClaimsCache = new JwtClaimsCache();
+        ReflectionTestUtils.setField(jwtClaimsCache, "jwtProperties", jwtProperties);
+        jwtClaimsCache.init();
+    }
+
+    @Test
+    void returnsSameClaimsAsParseJwt() {
+        String token = adminToken(1L, TTL);
+        Claims expected = JwtUtil.parseJWT(ADMIN_KEY, token);
+        assertEquals(expected, jwtClaimsCache.parseAdmin(token));
+        // 第二次从缓存返回
+        assertEquals(1, Long.parseLong(jwtClaimsCache.parseAdmin(token).get(JwtClaimsConstant.EMP_ID).toString()));
+    }
+
+    @Test
+    void cachedClaimsAreReadOnly() {
+        String token = adminToken(1L, TTL);
+        Claims claims = jwtClaimsCache.parseAdmin(token);
+        assertThrows(UnsupportedOperationException.class, () -> claims.put(JwtClaimsConstant.EMP_ID, 2L));
+        assertThrows(UnsupportedOperationException.class, () -> claims.setSubject("other"));
+        assertThrows(UnsupportedOperationException.class, () -> claims.remove(JwtClaimsConstant.EMP_ID));
+        // 缓存中的载荷没有被修改
+        assertEquals(JwtUtil.parseJWT(ADMIN_KEY, token), jwtClaimsCache.parseAdmin(token));
+    }
+
+    @Test
+    void rejectsInvalidTokens() {
+        String token = adminToken(1L, TTL);
+        // 先缓存合法令牌，再确认改过的令牌不会命中缓存
+        jwtClaimsCache.parseAdmin(token);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+        assertThrows(SignatureException.class, () -> jwtClaimsCache.parseAdmin(tampered));
+        // 管理端令牌不能用于用户端
+        assertThrows(SignatureException.class, () -> jwtClaimsCache.parseUser(token));
+        assertThrows(ExpiredJwtException.class, () -> jwtClaimsCache.parseAdmin(adminToken(2L, -1000)));
+        assertThrows(IllegalArgumentException.class, () -> jwtClaimsCache.parseAdmin(""));
+    }
+
+    private static String adminToken(Long empId, long ttlMillis) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtClaimsConstant.EMP_ID, empId);
+        return JwtUtil.createJWT(ADMIN_KEY, ttlMillis, claims);
+    }
+}
@@ -0,0 +1,124 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.CatalogSnapshotHolder;
+import com.sky.constant.StatusConstant;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.Dish;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.BeanUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下单时生成订单和明细：原先用BeanUtils从提交参数和购物车复制，与按价格目录定价的耗时对比
+ * 运行：mvn -P benchmark -pl sky-server -am test -Dbenchmark=OrderPricingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderPricingBenchmark {
+
+    //购物车中的商品行数
+    @Param({"1", "5", "20", "50"})
+    public int lines;
+
+    private OrderPricingServiceImpl orderPricingService;
+    private OrdersSubmitDTO ordersSubmitDTO;
+    private List<ShoppingCart> cart;
+
+    @Setup
+    public void setUp() {
+        Map<Long, Dish> dishes = new HashMap<>();
+        Map<Long, Setmeal> setmeals = new HashMap<>();
+        cart = new ArrayList<>(lines);
+        BigDecimal amount = BigDecimal.ZERO;
+        for (long id = 1; id <= lines; id++) {
+            BigDecimal price = new BigDecimal(10 + id);
+            // 菜品和套餐各占一半
+            if (id % 2 == 1) {
+                dishes.put(id, Dish.builder().id(id).name("菜品" + id).image("dish" + id + ".png")
+                        .price(price).status(StatusConstant.ENABLE).build());
+                cart.add(ShoppingCart.builder().name("菜品" + id).image("dish" + id + ".png")
+                        .dishId(id).dishFlavor("微辣").number(2).amount(price).build());
+                amount = amount.add(price.multiply(BigDecimal.valueOf(2)));
+            } else {
+                setmeals.put(id, Setmeal.builder().id(id).name("套餐" + id).image("setmeal" + id + ".png")
+                        .price(price).status(StatusConstant.ENABLE).build());
+                cart.add(ShoppingCart.builder().name("套餐" + id).image("setmeal" + id + ".png")
+                        .setmealId(id).number(1).amount(price).build());
+                amount = amount.add(price);
+            }
+        }
+
+        CatalogSnapshot snapshot = new CatalogSnapshot(1, System.currentTimeMillis(),
+                Collections.unmodifiableMap(dishes), Collections.unmodifiableMap(setmeals));
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder() {
+            @Override
+            public CatalogSnapshot get() {
+                return snapshot;
+            }
+        };
+        orderPricingService = new OrderPricingServiceImpl();
+        ReflectionTestUtils.setField(orderPricingService, "catalogSnapshotHolder", holder);
+
+        ordersSubmitDTO = new OrdersSubmitDTO();
+        ordersSubmitDTO.setAddressBookId(1L);
+        ordersSubmitDTO.setPayMethod(1);
+        ordersSubmitDTO.setTablewareNumber(2);
+        ordersSubmitDTO.setPackAmount(lines);
+        ordersSubmitDTO.setAmount(amount.add(BigDecimal.valueOf(lines + 6)));
+    }
+
+    /**
+     * 改为按价格目录定价之前的实现：订单和明细都用BeanUtils从提交参数和购物车复制
+     */
+    @Benchmark
+    public List<OrderDetail> beanUtilsCopy() {
+        Orders orders = new Orders();
+        BeanUtils.copyProperties(ordersSubmitDTO, orders);
+        List<OrderDetail> orderDetails = new ArrayList<>();
+        for (ShoppingCart shoppingCart : cart) {
+            OrderDetail orderDetail = new OrderDetail();
+            BeanUtils.copyProperties(shoppingCart, orderDetail);
+            orderDetails.add(orderDetail);
+        }
+        return orderDetails;
+    }
+
+    @Benchmark
+    public List<OrderDetail> catalogPricing() {
+        Orders orders = Orders.builder()
+                .addressBookId(ordersSubmitDTO.getAddressBookId())
+                .payMethod(ordersSubmitDTO.getPayMethod())
+                .amount(ordersSubmitDTO.getAmount())
+                .packAmount(ordersSubmitDTO.getPackAmount())
+                .tablewareNumber(ordersSubmitDTO.getTablewareNumber())
+                .build();
+        return orderPricingService.price(orders, cart);
+    }
+}
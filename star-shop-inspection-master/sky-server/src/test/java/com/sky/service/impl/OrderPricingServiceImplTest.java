@@ -0,0 +1,121 @@
+package com.sky.service.impl;
+
+import com.sky.cache.CatalogSnapshot;
+import com.sky.cache.CatalogSnapshotHolder;
+import com.sky.constant.MessageConstant;
+import com.sky.constant.StatusConstant;
+import com.sky.entity.Dish;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.Setmeal;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 订单定价：按价格目录生成明细并校验客户端提交的金额，与BeanUtils复制的耗时对比见OrderPricingBenchmark
+ */
+class OrderPricingServiceImplTest {
+
+    private OrderPricingServiceImpl orderPricingService;
+    private final Map<Long, Dish> dishes = new HashMap<>();
+    private final Map<Long, Setmeal> setmeals = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= 4; id++) {
+            dishes.put(id, Dish.builder().id(id).name("菜品" + id).image("dish" + id + ".png")
+                    .price(new BigDecimal(10 * id)).status(StatusConstant.ENABLE).build());
+        }
+        dishes.put(5L, Dish.builder().id(5L).name("停售菜品").price(BigDecimal.ONE).status(StatusConstant.DISABLE).build());
+        setmeals.put(1L, Setmeal.builder().id(1L).name("套餐1").image("setmeal1.png")
+                .price(new BigDecimal("58")).status(StatusConstant.ENABLE).build());
+
+        CatalogSnapshot snapshot = new CatalogSnapshot(1, System.currentTimeMillis(),
+                Collections.unmodifiableMap(dishes), Collections.unmodifiableMap(setmeals));
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder() {
+            @Override
+            public CatalogSnapshot get() {
+                return snapshot;
+            }
+        };
+        orderPricingService = new OrderPricingServiceImpl();
+        ReflectionTestUtils.setField(orderPricingService, "catalogSnapshotHolder", holder);
+    }
+
+    @Test
+    void pricesFromCatalogIgnoringCartPrices() {
+        // 菜品 10*2 + 20 + 30 + 40 + 套餐 58 = 168，打包费6，配送费6
+        Orders orders = Orders.builder().amount(new BigDecimal("180")).packAmount(6).build();
+        List<OrderDetail> details = orderPricingService.price(orders, cart());
+
+        assertEquals(5, details.size());
+        OrderDetail first = details.get(0);
+        assertEquals("菜品1", first.getName());
+        assertEquals("dish1.png", first.getImage());
+        assertEquals(new BigDecimal(10), first.getAmount());
+        assertEquals("微辣", first.getDishFlavor());
+        assertEquals(new BigDecimal(58), details.get(4).getAmount());
+        // 客户端提交的金额不被修改
+        assertEquals(6, orders.getPackAmount());
+        assertEquals(new BigDecimal("180"), orders.getAmount());
+    }
+
+    @Test
+    void rejectsAmountBelowCatalogPrice() {
+        // 提交的金额低于按当前价格计算的商品金额168与打包费6之和
+        Orders stale = Orders.builder().amount(new BigDecimal("172")).packAmount(6).build();
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderPricingService.price(stale, cart()));
+        assertEquals(MessageConstant.ORDER_AMOUNT_MISMATCH, e.getMessage());
+        assertEquals(new BigDecimal("172"), stale.getAmount());
+
+        // 刚好等于商品金额与打包费之和可以下单
+        orderPricingService.price(Orders.builder().amount(new BigDecimal("174")).packAmount(6).build(), cart());
+        assertThrows(OrderBusinessException.class, () -> orderPricingService.price(new Orders(), cart()));
+    }
+
+    @Test
+    void rejectsUnavailableItems() {
+        List<ShoppingCart> disabled = Collections.singletonList(cartItem(5L, null, 1));
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderPricingService.price(Orders.builder().amount(new BigDecimal("100")).build(), disabled));
+        assertEquals(MessageConstant.ORDER_ITEM_UNAVAILABLE, e.getMessage());
+
+        List<ShoppingCart> missing = Collections.singletonList(cartItem(null, 99L, 1));
+        e = assertThrows(OrderBusinessException.class,
+                () -> orderPricingService.price(Orders.builder().amount(new BigDecimal("100")).build(), missing));
+        assertEquals(MessageConstant.ORDER_ITEM_UNAVAILABLE, e.getMessage());
+    }
+
+    private static List<ShoppingCart> cart() {
+        ShoppingCart first = cartItem(1L, null, 2);
+        first.setDishFlavor("微辣");
+        // 购物车中保存的是加入时的价格，下单时不使用
+        first.setAmount(new BigDecimal("8"));
+        return Arrays.asList(first, cartItem(2L, null, 1), cartItem(3L, null, 1), cartItem(4L, null, 1),
+                cartItem(null, 1L, 1));
+    }
+
+    private static ShoppingCart cartItem(Long dishId, Long setmealId, int number) {
+        return ShoppingCart.builder()
+                .name("购物车中的名称")
+                .dishId(dishId)
+                .setmealId(setmealId)
+                .number(number)
+                .amount(BigDecimal.ONE)
+                .build();
+    }
+}
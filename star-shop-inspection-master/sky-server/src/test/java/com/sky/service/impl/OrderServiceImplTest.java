@@ -0,0 +1,241 @@
+package com.sky.service.impl;
+
+import com.sky.constant.MessageConstant;
+import com.sky.context.BaseContext;
+import com.sky.dto.OrdersSubmitDTO;
+import com.sky.entity.AddressBook;
+import com.sky.entity.OrderDetail;
+import com.sky.entity.Orders;
+import com.sky.entity.ShoppingCart;
+import com.sky.exception.OrderBusinessException;
+import com.sky.mapper.AddressBookMapper;
+import com.sky.mapper.OrderDetailMapper;
+import com.sky.mapper.OrderMapper;
+import com.sky.service.BusinessStatsService;
+import com.sky.service.IdGeneratorService;
+import com.sky.service.OrderEventService;
+import com.sky.service.OrderPricingService;
+import com.sky.service.OrderTimeoutService;
+import com.sky.service.ShoppingCartService;
+import com.sky.service.WorkspaceService;
+import com.sky.vo.OrderSubmitVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 同一幂等键并发下单的压力测试，redis和订单表的唯一索引都用内存实现
+ */
+class OrderServiceImplTest {
+
+    private static final long USER_ID = 7L;
+    private static final String KEY = "c0ffee";
+    private static final int THREADS = 32;
+
+    private OrderServiceImpl orderService;
+
+    //模拟redis中的字符串键
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    //模拟订单表(user_id, idempotency_key)唯一索引
+    private final Map<String, Orders> ordersByKey = new ConcurrentHashMap<>();
+    private final AtomicInteger inserted = new AtomicInteger();
+    //为true时提交中标记总能抢到，相当于前一次提交的标记已经过期
+    private volatile boolean claimsExpire;
+    private volatile boolean redisSetFails;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        orderService = new OrderServiceImpl();
+
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenAnswer(inv -> {
+            if (claimsExpire) {
+                redis.put(inv.getArgument(0), inv.getArgument(1));
+                return true;
+            }
+            return redis.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null;
+        });
+        when(valueOperations.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        doAnswer(inv -> {
+            if (redisSetFails) {
+                throw new RedisConnectionFailureException("redis不可用");
+            }
+            redis.put(inv.getArgument(0), inv.getArgument(1));
+            return null;
+        }).when(valueOperations).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        when(stringRedisTemplate.delete(anyString())).thenAnswer(inv -> redis.remove(inv.<String>getArgument(0)) != null);
+        orderService.stringRedisTemplate = stringRedisTemplate;
+
+        OrderMapper orderMapper = mock(OrderMapper.class);
+        doAnswer(inv -> {
+            Orders orders = inv.getArgument(0);
+            // 放大并发窗口
+            Thread.sleep(2);
+            if (orders.getIdempotencyKey() != null
+                    && ordersByKey.putIfAbsent(orders.getUserId() + ":" + orders.getIdempotencyKey(), orders) != null) {
+                throw new DuplicateKeyException("uk_user_idempotency_key");
+            }
+            inserted.incrementAndGet();
+            return null;
+        }).when(orderMapper).insert(any(Orders.class));
+        when(orderMapper.getByIdempotencyKey(anyLong(), anyString()))
+                .thenAnswer(inv -> ordersByKey.get(inv.getArgument(0) + ":" + inv.getArgument(1)));
+        orderService.orderMapper = orderMapper;
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(inv -> {
+            inv.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        orderService.transactionTemplate = transactionTemplate;
+
+        AddressBookMapper addressBookMapper = mock(AddressBookMapper.class);
+        AddressBook addressBook = new AddressBook();
+        addressBook.setPhone("13800000000");
+        addressBook.setConsignee("张三");
+        when(addressBookMapper.getById(any())).thenReturn(addressBook);
+        orderService.addressBookMapper = addressBookMapper;
+
+        ShoppingCartService shoppingCartService = mock(ShoppingCartService.class);
+        ShoppingCart item = ShoppingCart.builder().dishId(1L).number(1).amount(new BigDecimal("10")).build();
+        when(shoppingCartService.list(USER_ID)).thenReturn(Collections.singletonList(item));
+        orderService.shoppingCartService = shoppingCartService;
+
+        OrderPricingService orderPricingService = mock(OrderPricingService.class);
+        when(orderPricingService.price(any(Orders.class), any())).thenAnswer(inv -> {
+            List<OrderDetail> details = new ArrayList<>();
+            details.add(new OrderDetail());
+            return details;
+        });
+        orderService.orderPricingService = orderPricingService;
+
+        AtomicLong ids = new AtomicLong();
+        IdGeneratorService idGeneratorService = mock(IdGeneratorService.class);
+        when(idGeneratorService.nextId()).thenAnswer(inv -> ids.incrementAndGet());
+        when(idGeneratorService.nextOrderNumber()).thenAnswer(inv -> "N" + ids.incrementAndGet());
+        orderService.idGeneratorService = idGeneratorService;
+
+        orderService.orderDetailMapper = mock(OrderDetailMapper.class);
+        orderService.businessStatsService = mock(BusinessStatsService.class);
+        orderService.orderTimeoutService = mock(OrderTimeoutService.class);
+        orderService.workspaceService = mock(WorkspaceService.class);
+        orderService.orderEventService = mock(OrderEventService.class);
+    }
+
+    @Test
+    void concurrentSubmitsWithSameKeyCreateOneOrder() throws Exception {
+        Set<Long> orderIds = submitConcurrently();
+        assertEquals(1, inserted.get());
+        assertTrue(orderIds.size() <= 1);
+        // 并发时被拒绝的请求重试拿到同一个订单
+        assertEquals(ordersByKey.values().iterator().next().getId(), submit().getId());
+        assertEquals(1, inserted.get());
+    }
+
+    @Test
+    void expiredClaimsAreResolvedByUniqueIndex() throws Exception {
+        claimsExpire = true;
+        Set<Long> orderIds = submitConcurrently();
+        assertEquals(1, inserted.get());
+        assertEquals(1, orderIds.size());
+    }
+
+    @Test
+    void retryAfterLostResultReturnsSameOrder() {
+        redisSetFails = true;
+        OrderSubmitVO first = submit();
+        redisSetFails = false;
+        // 结果没写进redis，提交中标记到期后重试
+        redis.clear();
+        OrderSubmitVO second = submit();
+        assertEquals(first.getId(), second.getId());
+        assertEquals(1, inserted.get());
+    }
+
+    @Test
+    void tooLongKeyIsRejected() {
+        BaseContext.setCurrentId(USER_ID);
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 65; i++) {
+            key.append('k');
+        }
+        OrderBusinessException e = assertThrows(OrderBusinessException.class,
+                () -> orderService.submitOrder(new OrdersSubmitDTO(), key.toString()));
+        assertEquals(MessageConstant.IDEMPOTENCY_KEY_TOO_LONG, e.getMessage());
+        assertEquals(0, inserted.get());
+    }
+
+    private OrderSubmitVO submit() {
+        BaseContext.setCurrentId(USER_ID);
+        try {
+            return orderService.submitOrder(new OrdersSubmitDTO(), KEY);
+        } finally {
+            BaseContext.removeCurrentId();
+        }
+    }
+
+    /**
+     * 多个线程同时用同一幂等键下单，返回成功的请求拿到的订单id
+     */
+    private Set<Long> submitConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<OrderSubmitVO>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    return submit();
+                } catch (OrderBusinessException e) {
+                    assertEquals(MessageConstant.ORDER_SUBMITTING, e.getMessage());
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+        Set<Long> orderIds = new HashSet<>();
+        for (Future<OrderSubmitVO> future : futures) {
+            OrderSubmitVO vo = future.get(10, TimeUnit.SECONDS);
+            if (vo != null) {
+                orderIds.add(vo.getId());
+            }
+        }
+        executor.shutdown();
+        return orderIds;
+    }
+}
@@ -0,0 +1,119 @@
+package com.sky.service.impl;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.BusinessStatsService;
+import com.sky.vo.TurnoverReportVO;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 营业额统计：一次查询整个区间与逐天查询订单表的结果对比，耗时对比见TurnoverReportBenchmark
+ */
+class ReportServiceImplTest {
+
+    private static final int DAYS = 30;
+
+    private static final LocalDate BEGIN = LocalDate.of(2026, 9, 1);
+    private static final LocalDate END = BEGIN.plusDays(DAYS - 1);
+
+    private ReportServiceImpl reportService;
+    private OrderMapper orderMapper;
+    //已完成订单每天的营业额，部分日期没有订单
+    private final Map<LocalDate, Double> turnoverByDay = new HashMap<>();
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < DAYS; i++) {
+            if (i % 7 != 3) {
+                turnoverByDay.put(BEGIN.plusDays(i), 100.0 + i * 12.5);
+            }
+        }
+
+        orderMapper = mock(OrderMapper.class);
+        when(orderMapper.sumByMap(anyMap())).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            Map<?, ?> map = inv.getArgument(0);
+            assertEquals(Orders.COMPLETED, map.get("status"));
+            return turnoverByDay.get(((LocalDateTime) map.get("begin")).toLocalDate());
+        });
+
+        BusinessStatsService businessStatsService = mock(BusinessStatsService.class);
+        when(businessStatsService.list(any(LocalDate.class), any(LocalDate.class))).thenAnswer(inv -> {
+            queries.incrementAndGet();
+            LocalDate begin = inv.getArgument(0);
+            LocalDate end = inv.getArgument(1);
+            List<DailyBusinessStats> statsList = new ArrayList<>();
+            for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+                Double turnover = turnoverByDay.get(date);
+                statsList.add(DailyBusinessStats.builder()
+                        .statDate(date)
+                        .turnover(turnover == null ? BigDecimal.ZERO : BigDecimal.valueOf(turnover))
+                        .build());
+            }
+            return statsList;
+        });
+
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(reportService, "businessStatsService", businessStatsService);
+        ReflectionTestUtils.setField(reportService, "reportProperties", new ReportProperties());
+    }
+
+    @Test
+    void rangeQueryMatchesPerDayQueriesWithOneRoundTrip() {
+        TurnoverReportVO expected = perDayTurnover(BEGIN, END);
+        queries.set(0);
+        TurnoverReportVO actual = reportService.getTurnover(BEGIN, END);
+        assertEquals(1, queries.get());
+        assertEquals(expected.getDateList(), actual.getDateList());
+        assertEquals(expected.getTurnoverList(), actual.getTurnoverList());
+    }
+
+    /**
+     * 改为一次查询之前的实现：每天调用一次sumByMap
+     */
+    private TurnoverReportVO perDayTurnover(LocalDate begin, LocalDate end) {
+        List<LocalDate> dateList = new ArrayList<>();
+        dateList.add(begin);
+        while (!begin.equals(end)) {
+            begin = begin.plusDays(1);
+            dateList.add(begin);
+        }
+
+        List<Double> turnoverList = new ArrayList<>();
+        for (LocalDate date : dateList) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("status", Orders.COMPLETED);
+            map.put("begin", LocalDateTime.of(date, LocalTime.MIN));
+            map.put("end", LocalDateTime.of(date, LocalTime.MAX));
+            Double turnover = orderMapper.sumByMap(map);
+            turnoverList.add(turnover == null ? 0.0 : turnover);
+        }
+        return TurnoverReportVO.builder()
+                .dateList(StringUtils.join(dateList, ","))
+                .turnoverList(StringUtils.join(turnoverList, ","))
+                .build();
+    }
+}
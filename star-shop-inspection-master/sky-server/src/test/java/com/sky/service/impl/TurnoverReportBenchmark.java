@@ -0,0 +1,134 @@
+package com.sky.service.impl;
+
+import com.sky.entity.DailyBusinessStats;
+import com.sky.entity.Orders;
+import com.sky.mapper.OrderMapper;
+import com.sky.properties.ReportProperties;
+import com.sky.service.BusinessStatsService;
+import com.sky.vo.TurnoverReportVO;
+import org.apache.commons.lang3.StringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 营业额统计：逐天查询订单表与一次查询整个区间的耗时对比，每次查询模拟一次数据库往返
+ * 运行：mvn -P benchmark -pl sky-server -am test -Dbenchmark=TurnoverReportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TurnoverReportBenchmark {
+
+    //模拟的数据库往返时间
+    private static final long ROUND_TRIP_MILLIS = 1;
+    private static final LocalDate BEGIN = LocalDate.of(2026, 9, 1);
+
+    //统计的天数
+    @Param({"7", "30", "90"})
+    public int days;
+
+    private LocalDate end;
+    private ReportServiceImpl reportService;
+    private OrderMapper orderMapper;
+
+    @Setup
+    public void setUp() {
+        end = BEGIN.plusDays(days - 1);
+        //已完成订单每天的营业额，部分日期没有订单
+        Map<LocalDate, Double> turnoverByDay = new HashMap<>();
+        for (int i = 0; i < days; i++) {
+            if (i % 7 != 3) {
+                turnoverByDay.put(BEGIN.plusDays(i), 100.0 + i * 12.5);
+            }
+        }
+
+        orderMapper = mock(OrderMapper.class);
+        when(orderMapper.sumByMap(anyMap())).thenAnswer(inv -> {
+            TimeUnit.MILLISECONDS.sleep(ROUND_TRIP_MILLIS);
+            Map<?, ?> map = inv.getArgument(0);
+            return turnoverByDay.get(((LocalDateTime) map.get("begin")).toLocalDate());
+        });
+
+        BusinessStatsService businessStatsService = mock(BusinessStatsService.class);
+        when(businessStatsService.list(any(LocalDate.class), any(LocalDate.class))).thenAnswer(inv -> {
+            TimeUnit.MILLISECONDS.sleep(ROUND_TRIP_MILLIS);
+            LocalDate begin = inv.getArgument(0);
+            LocalDate end = inv.getArgument(1);
+            List<DailyBusinessStats> statsList = new ArrayList<>();
+            for (LocalDate date = begin; !date.isAfter(end); date = date.plusDays(1)) {
+                Double turnover = turnoverByDay.get(date);
+                statsList.add(DailyBusinessStats.builder()
+                        .statDate(date)
+                        .turnover(turnover == null ? BigDecimal.ZERO : BigDecimal.valueOf(turnover))
+                        .build());
+            }
+            return statsList;
+        });
+
+        reportService = new ReportServiceImpl();
+        ReflectionTestUtils.setField(reportService, "orderMapper", orderMapper);
+        ReflectionTestUtils.setField(reportService, "businessStatsService", businessStatsService);
+        ReflectionTestUtils.setField(reportService, "reportProperties", new ReportProperties());
+    }
+
+    /**
+     * 改为一次查询之前的实现：每天调用一次sumByMap
+     */
+    @Benchmark
+    public TurnoverReportVO perDayQueries() {
+        List<LocalDate> dateList = new ArrayList<>();
+        LocalDate begin = BEGIN;
+        dateList.add(begin);
+        while (!begin.equals(end)) {
+            begin = begin.plusDays(1);
+            dateList.add(begin);
+        }
+
+        List<Double> turnoverList = new ArrayList<>();
+        for (LocalDate date : dateList) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("status", Orders.COMPLETED);
+            map.put("begin", LocalDateTime.of(date, LocalTime.MIN));
+            map.put("end", LocalDateTime.of(date, LocalTime.MAX));
+            Double turnover = orderMapper.sumByMap(map);
+            turnoverList.add(turnover == null ? 0.0 : turnover);
+        }
+        return TurnoverReportVO.builder()
+                .dateList(StringUtils.join(dateList, ","))
+                .turnoverList(StringUtils.join(turnoverList, ","))
+                .build();
+    }
+
+    @Benchmark
+    public TurnoverReportVO rangeQuery() {
+        return reportService.getTurnover(BEGIN, end);
+    }
+}
@@ -0,0 +1,213 @@
+package com.sky.service.impl;
+
+import com.alibaba.fastjson.JSONObject;
+import com.sky.constant.MessageConstant;
+import com.sky.dto.UserLoginDTO;
+import com.sky.entity.User;
+import com.sky.exception.LoginFailedException;
+import com.sky.mapper.UserMapper;
+import com.sky.properties.WeChatLoginProperties;
+import com.sky.properties.WeChatProperties;
+import com.sky.service.BusinessStatsService;
+import com.sky.utils.HttpClientUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用本地http服务代替微信登录接口，验证超时、熔断和线程使用
+ */
+class UserServiceImplTest {
+
+    private static final long TIMEOUT_MILLIS = 300;
+    //慢响应的处理时间，远大于登录超时
+    private static final long SLOW_MILLIS = 3000;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger wxCalls = new AtomicInteger();
+
+    private UserServiceImpl userService;
+    private ThreadPoolTaskExecutor weChatLoginExecutor;
+    //模拟user表openid唯一索引
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final AtomicInteger userIds = new AtomicInteger();
+    //查询用户时所在的线程
+    private volatile String lookupThread;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/sns/jscode2session", this::jscode2session);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        WeChatLoginProperties properties = new WeChatLoginProperties();
+        properties.setUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/sns/jscode2session");
+        properties.setThreads(2);
+        properties.setQueueCapacity(10);
+        properties.setTimeoutMillis(TIMEOUT_MILLIS);
+        properties.setFailureThreshold(2);
+        properties.setOpenSeconds(30);
+        // 用户缓存立即过期，每次登录都会查询用户
+        properties.setUserCacheMinutes(0);
+
+        weChatLoginExecutor = new ThreadPoolTaskExecutor();
+        weChatLoginExecutor.setCorePoolSize(properties.getThreads());
+        weChatLoginExecutor.setMaxPoolSize(properties.getThreads());
+        weChatLoginExecutor.setQueueCapacity(properties.getQueueCapacity());
+        weChatLoginExecutor.setThreadNamePrefix("wechat-login-");
+        weChatLoginExecutor.initialize();
+
+        UserMapper userMapper = mock(UserMapper.class);
+        when(userMapper.getByOpenid(anyString())).thenAnswer(inv -> {
+            lookupThread = Thread.currentThread().getName();
+            return users.get(inv.<String>getArgument(0));
+        });
+        when(userMapper.insertIgnore(any(User.class))).thenAnswer(inv -> {
+            User user = inv.getArgument(0);
+            user.setId((long) userIds.incrementAndGet());
+            return users.putIfAbsent(user.getOpenid(), user) == null ? 1 : 0;
+        });
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        WeChatProperties weChatProperties = new WeChatProperties();
+        weChatProperties.setAppid("appid");
+        weChatProperties.setSecret("secret");
+
+        userService = new UserServiceImpl();
+        userService.weChatProperties = weChatProperties;
+        userService.weChatLoginProperties = properties;
+        userService.weChatLoginExecutor = weChatLoginExecutor;
+        userService.userMapper = userMapper;
+        userService.transactionTemplate = transactionTemplate;
+        userService.businessStatsService = mock(BusinessStatsService.class);
+        userService.init();
+
+        // 先加载http客户端和json解析的类，避免首次登录因类加载超时
+        JSONObject.parseObject(HttpClientUtil.doGet(properties.getUrl(), Collections.singletonMap("js_code", "warmup")));
+        wxCalls.set(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        userService.shutdown();
+        weChatLoginExecutor.shutdown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void loginRegistersUserAndCachesOpenid() throws Exception {
+        User first = login("good");
+        assertEquals("openid-good", first.getOpenid());
+        assertEquals(1, users.size());
+
+        // 同一个登录码再次提交不再调用微信接口，查询用户也不在请求线程中执行
+        lookupThread = null;
+        User second = login("good");
+        assertEquals(first.getId(), second.getId());
+        // 只返回注册后不会改变的id和openid
+        assertNull(second.getCreateTime());
+        assertEquals(1, wxCalls.get());
+        assertTrue(lookupThread.startsWith("wechat-login-"), lookupThread);
+    }
+
+    @Test
+    void invalidCodeFailsWithoutOpeningCircuit() {
+        for (int i = 0; i < 3; i++) {
+            assertLoginFails("invalid", MessageConstant.LOGIN_FAILED);
+        }
+        assertEquals(3, wxCalls.get());
+    }
+
+    @Test
+    void slowResponseTimesOutAndReleasesLoginThread() throws Exception {
+        long begin = System.nanoTime();
+        assertLoginFails("slow", MessageConstant.LOGIN_FAILED);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+        assertTrue(elapsedMillis < SLOW_MILLIS / 2, "login took " + elapsedMillis + " ms");
+
+        // http调用使用同样的超时，登录线程不会等到服务端返回
+        long deadline = System.currentTimeMillis() + SLOW_MILLIS / 2;
+        while (weChatLoginExecutor.getActiveCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, weChatLoginExecutor.getActiveCount());
+    }
+
+    @Test
+    void repeatedTimeoutsOpenCircuit() {
+        assertLoginFails("slow", MessageConstant.LOGIN_FAILED);
+        assertLoginFails("slow", MessageConstant.LOGIN_FAILED);
+        int calls = wxCalls.get();
+        // 熔断后直接失败，不再调用微信接口
+        assertLoginFails("good", MessageConstant.LOGIN_BUSY);
+        assertEquals(calls, wxCalls.get());
+    }
+
+    private User login(String code) throws Exception {
+        UserLoginDTO dto = new UserLoginDTO();
+        dto.setCode(code);
+        return userService.login(dto).get(5, TimeUnit.SECONDS);
+    }
+
+    private void assertLoginFails(String code, String message) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> login(code));
+        assertTrue(e.getCause() instanceof LoginFailedException, String.valueOf(e.getCause()));
+        assertEquals(message, e.getCause().getMessage());
+    }
+
+    private void jscode2session(HttpExchange exchange) throws IOException {
+        wxCalls.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        String body;
+        if (query.contains("js_code=slow")) {
+            try {
+                Thread.sleep(SLOW_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            body = "{\"openid\":\"openid-slow\"}";
+        } else if (query.contains("js_code=invalid")) {
+            body = "{\"errcode\":40029,\"errmsg\":\"invalid code\"}";
+        } else {
+            body = "{\"openid\":\"openid-good\"}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sky.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用本地桩服务验证共用客户端的连接复用，非200的响应也要读完，连接才能回到连接池
+ */
+class HttpClientUtilTest {
+
+    private static final int THREADS = 8;
+    private static final int CALLS_PER_THREAD = 100;
+
+    private static HttpServer server;
+    private static ExecutorService serverExecutor;
+    private static String baseUrl;
+    //服务端看到的客户端端口，每个端口对应一条连接
+    private static final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> respond(exchange, 200, "ok:" + exchange.getRequestURI().getQuery()));
+        server.createContext("/error", exchange -> respond(exchange, 500, "server error"));
+        server.createContext("/echo", exchange -> respond(exchange, 200, read(exchange)));
+        serverExecutor = Executors.newFixedThreadPool(THREADS * 2);
+        server.setExecutor(serverExecutor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void mixedRequestsReusePooledConnections() throws Exception {
+        HttpClientMetrics metrics = HttpClientUtil.getMetrics();
+        long failuresBefore = metrics.getFailureCount();
+        long requestsBefore = metrics.getRequestCount();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    Map<String, String> params = new HashMap<>();
+                    params.put("n", thread + "-" + i);
+                    switch (i % 4) {
+                        case 0:
+                            assertEquals("ok:n=" + thread + "-" + i, HttpClientUtil.doGet(baseUrl + "/ok", params));
+                            break;
+                        case 1:
+                            // 非200返回空串，连接仍要复用
+                            assertEquals("", HttpClientUtil.doGet(baseUrl + "/error", params));
+                            break;
+                        case 2:
+                            assertEquals("n=" + thread + "-" + i, HttpClientUtil.doPost(baseUrl + "/echo", params));
+                            break;
+                        default:
+                            assertEquals("{\"n\":\"" + thread + "-" + i + "\"}",
+                                    HttpClientUtil.doPost4Json(baseUrl + "/echo", params));
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int calls = THREADS * CALLS_PER_THREAD;
+        assertEquals(calls, metrics.getRequestCount() - requestsBefore);
+        assertEquals(0, metrics.getFailureCount() - failuresBefore);
+        // 每个线程同一时刻只占一条连接，连接全部复用时不会超过线程数
+        assertTrue(clientPorts.size() <= THREADS, "connections opened: " + clientPorts.size());
+        assertEquals(0, metrics.getPoolStats().getLeased());
+    }
+
+    private static String read(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            StringBuilder body = new StringBuilder();
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                body.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+            }
+            return body.toString();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
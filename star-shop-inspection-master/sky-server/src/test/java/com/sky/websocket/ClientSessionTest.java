@@ -0,0 +1,93 @@
+package com.sky.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 心跳与消息共用一个发送名额：ping不在调用方线程发送，不会和消息同时发送，也不会重复排队
+ */
+class ClientSessionTest {
+
+    private Session session;
+    private RemoteEndpoint.Basic basic;
+    //心跳线程池中等待执行的任务，由测试手动执行
+    private final List<Runnable> pingTasks = new ArrayList<>();
+    //正在异步发送的消息的回调
+    private final List<SendHandler> sendHandlers = new ArrayList<>();
+    private ClientSession clientSession;
+
+    @BeforeEach
+    void setUp() {
+        session = mock(Session.class);
+        RemoteEndpoint.Async async = mock(RemoteEndpoint.Async.class);
+        basic = mock(RemoteEndpoint.Basic.class);
+        when(session.getAsyncRemote()).thenReturn(async);
+        when(session.getBasicRemote()).thenReturn(basic);
+        when(session.getUserProperties()).thenReturn(new HashMap<>());
+        doAnswer(inv -> sendHandlers.add(inv.getArgument(1)))
+                .when(async).sendText(anyString(), any(SendHandler.class));
+        clientSession = new ClientSession("1", session, 10, 5000, true, new WebSocketMetrics(), pingTasks::add);
+    }
+
+    @Test
+    void pingRunsOnPingExecutorAndIsNotQueuedTwice() throws Exception {
+        clientSession.ping();
+        clientSession.ping();
+        verify(basic, never()).sendPing(any(ByteBuffer.class));
+        assertEquals(1, pingTasks.size());
+
+        pingTasks.remove(0).run();
+        verify(basic, times(1)).sendPing(any(ByteBuffer.class));
+        assertEquals(0, pingTasks.size());
+    }
+
+    @Test
+    void pingWaitsForMessageInFlight() throws Exception {
+        clientSession.send("order");
+        clientSession.ping();
+        clientSession.send("reminder");
+        assertEquals(1, sendHandlers.size());
+        assertEquals(0, pingTasks.size());
+
+        // 消息发送完成后先发心跳，再发下一条消息
+        sendHandlers.get(0).onResult(new SendResult());
+        assertEquals(1, pingTasks.size());
+        assertEquals(1, sendHandlers.size());
+
+        pingTasks.remove(0).run();
+        verify(basic).sendPing(any(ByteBuffer.class));
+        assertEquals(2, sendHandlers.size());
+    }
+
+    @Test
+    void closesSessionWhenPingFails() throws Exception {
+        doThrow(new SocketTimeoutException("ping timeout")).when(basic).sendPing(any(ByteBuffer.class));
+        clientSession.ping();
+        pingTasks.remove(0).run();
+        verify(session).close(any());
+
+        clientSession.ping();
+        assertEquals(0, pingTasks.size());
+    }
+}